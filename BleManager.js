@@ -57,18 +57,21 @@ class BleManager {
     BT_UNSUPPORTED: 9, // BLE is unsupported on the provided device
     GUI_RESOURCE_UNAVAILABLE: 10, // Failed to get UI resource like the current acitivity, likely b
     CONNECTION_LIMIT_REACHED: 11, // Connection limit reached
+    OPERATION_TIMEOUT: 12, // The operation did not complete within the configured command timeout
+    OPERATION_CANCELLED: 13, // The operation was cancelled with cancelOperations before it started
   }
 
   constructor() {
     this.isPeripheralConnected = this.isPeripheralConnected.bind(this);
   }
 
-  read(peripheralId, serviceUUID, characteristicUUID) {
+  read(peripheralId, serviceUUID, characteristicUUID, options = {}) {
     return new Promise((fulfill, reject) => {
       bleManager.read(
         peripheralId,
         serviceUUID,
         characteristicUUID,
+        options,
         (error, data) => {
           if (error) {
             reject(new BleError(error));
@@ -80,9 +83,9 @@ class BleManager {
     });
   }
 
-  readRSSI(peripheralId) {
+  readRSSI(peripheralId, options = {}) {
     return new Promise((fulfill, reject) => {
-      bleManager.readRSSI(peripheralId, (error, rssi) => {
+      bleManager.readRSSI(peripheralId, options, (error, rssi) => {
         if (error) {
           reject(new BleError(error));
         } else {
@@ -120,9 +123,16 @@ class BleManager {
     });
   }
 
-  write(peripheralId, serviceUUID, characteristicUUID, data, maxByteSize) {
+  write(
+    peripheralId,
+    serviceUUID,
+    characteristicUUID,
+    data,
+    maxByteSize,
+    options = {}
+  ) {
     if (maxByteSize == null) {
-      maxByteSize = 20;
+      maxByteSize = 0;
     }
     return new Promise((fulfill, reject) => {
       bleManager.write(
@@ -131,6 +141,37 @@ class BleManager {
         characteristicUUID,
         data,
         maxByteSize,
+        options,
+        error => {
+          if (error) {
+            reject(new BleError(error));
+          } else {
+            fulfill();
+          }
+        }
+      );
+    });
+  }
+
+  writeBase64(
+    peripheralId,
+    serviceUUID,
+    characteristicUUID,
+    data,
+    maxByteSize,
+    options = {}
+  ) {
+    if (maxByteSize == null) {
+      maxByteSize = 0;
+    }
+    return new Promise((fulfill, reject) => {
+      bleManager.writeBase64(
+        peripheralId,
+        serviceUUID,
+        characteristicUUID,
+        data,
+        maxByteSize,
+        options,
         error => {
           if (error) {
             reject(new BleError(error));
@@ -142,16 +183,93 @@ class BleManager {
     });
   }
 
+  writeWithoutResponseBase64(
+    peripheralId,
+    serviceUUID,
+    characteristicUUID,
+    data,
+    maxByteSize,
+    options = {}
+  ) {
+    if (maxByteSize == null) {
+      maxByteSize = 0;
+    }
+    return new Promise((fulfill, reject) => {
+      bleManager.writeWithoutResponseBase64(
+        peripheralId,
+        serviceUUID,
+        characteristicUUID,
+        data,
+        maxByteSize,
+        options,
+        error => {
+          if (error) {
+            reject(new BleError(error));
+          } else {
+            fulfill();
+          }
+        }
+      );
+    });
+  }
+
+  readByHandle(peripheralId, handle, options = {}) {
+    return new Promise((fulfill, reject) => {
+      bleManager.readByHandle(peripheralId, handle, options, (error, data) => {
+        if (error) {
+          reject(new BleError(error));
+        } else {
+          fulfill(data);
+        }
+      });
+    });
+  }
+
+  writeByHandle(peripheralId, handle, data, maxByteSize, options = {}) {
+    if (maxByteSize == null) {
+      maxByteSize = 0;
+    }
+    return new Promise((fulfill, reject) => {
+      bleManager.writeByHandle(
+        peripheralId,
+        handle,
+        data,
+        maxByteSize,
+        options,
+        error => {
+          if (error) {
+            reject(new BleError(error));
+          } else {
+            fulfill();
+          }
+        }
+      );
+    });
+  }
+
+  writeReliable(peripheralId, writes, options = {}) {
+    return new Promise((fulfill, reject) => {
+      bleManager.writeReliable(peripheralId, writes, options, error => {
+        if (error) {
+          reject(new BleError(error));
+        } else {
+          fulfill();
+        }
+      });
+    });
+  }
+
   writeWithoutResponse(
     peripheralId,
     serviceUUID,
     characteristicUUID,
     data,
     maxByteSize,
-    queueSleepTime
+    queueSleepTime,
+    options = {}
   ) {
     if (maxByteSize == null) {
-      maxByteSize = 20;
+      maxByteSize = 0;
     }
     if (queueSleepTime == null) {
       queueSleepTime = 10;
@@ -164,6 +282,7 @@ class BleManager {
         data,
         maxByteSize,
         queueSleepTime,
+        options,
         error => {
           if (error) {
             reject(new BleError(error));
@@ -187,6 +306,18 @@ class BleManager {
     });
   }
 
+  connectWithProfile(peripheralId, profile = {}) {
+    return new Promise((fulfill, reject) => {
+      bleManager.connectWithProfile(peripheralId, profile, (error, result) => {
+        if (error) {
+          reject(new BleError(error));
+        } else {
+          fulfill(result);
+        }
+      });
+    });
+  }
+
   createBond(peripheralId,peripheralPin=null) {
     return new Promise((fulfill, reject) => {
       bleManager.createBond(peripheralId,peripheralPin, error => {
@@ -223,12 +354,13 @@ class BleManager {
     });
   }
 
-  startNotification(peripheralId, serviceUUID, characteristicUUID) {
+  startNotification(peripheralId, serviceUUID, characteristicUUID, options = {}) {
     return new Promise((fulfill, reject) => {
       bleManager.startNotification(
         peripheralId,
         serviceUUID,
         characteristicUUID,
+        options,
         error => {
           if (error) {
             reject(new BleError(error));
@@ -244,7 +376,8 @@ class BleManager {
     peripheralId,
     serviceUUID,
     characteristicUUID,
-    buffer
+    buffer,
+    options = {}
   ) {
     return new Promise((fulfill, reject) => {
       bleManager.startNotificationUseBuffer(
@@ -252,6 +385,7 @@ class BleManager {
         serviceUUID,
         characteristicUUID,
         buffer,
+        options,
         error => {
           if (error) {
             reject(new BleError(error));
@@ -491,6 +625,77 @@ class BleManager {
     });
   }
 
+  setReadCachePolicy(peripheralId, serviceUUID, characteristicUUID, ttl) {
+    return new Promise((fulfill, reject) => {
+      bleManager.setReadCachePolicy(
+        peripheralId,
+        serviceUUID,
+        characteristicUUID,
+        ttl,
+        error => {
+          if (error) {
+            reject(new BleError(error));
+          } else {
+            fulfill();
+          }
+        }
+      );
+    });
+  }
+
+  cancelOperations(peripheralId, tag) {
+    return new Promise((fulfill, reject) => {
+      bleManager.cancelOperations(peripheralId, tag, (error, cancelled) => {
+        if (error) {
+          reject(new BleError(error));
+        } else {
+          fulfill(cancelled);
+        }
+      });
+    });
+  }
+
+  executeBatch(peripheralId, operations, options = {}) {
+    return new Promise((fulfill, reject) => {
+      bleManager.executeBatch(
+        peripheralId,
+        operations,
+        options,
+        (error, results) => {
+          if (error) {
+            reject(new BleError(error));
+          } else {
+            fulfill(results);
+          }
+        }
+      );
+    });
+  }
+
+  getConnectionParameters(peripheralId) {
+    return new Promise((fulfill, reject) => {
+      bleManager.getConnectionParameters(peripheralId, (error, parameters) => {
+        if (error) {
+          reject(new BleError(error));
+        } else {
+          fulfill(parameters);
+        }
+      });
+    });
+  }
+
+  getPeripheralStats(peripheralId) {
+    return new Promise((fulfill, reject) => {
+      bleManager.getPeripheralStats(peripheralId, (error, stats) => {
+        if (error) {
+          reject(new BleError(error));
+        } else {
+          fulfill(stats);
+        }
+      });
+    });
+  }
+
   requestMTU(peripheralId, mtu) {
     return new Promise((fulfill, reject) => {
       bleManager.requestMTU(peripheralId, mtu, (error, mtu) => {
@@ -503,6 +708,30 @@ class BleManager {
     });
   }
 
+  setPreferredPhy(peripheralId, txPhy, rxPhy, phyOptions = 0) {
+    return new Promise((fulfill, reject) => {
+      bleManager.setPreferredPhy(peripheralId, txPhy, rxPhy, phyOptions, (error, phy) => {
+        if (error) {
+          reject(new BleError(error));
+        } else {
+          fulfill(phy);
+        }
+      });
+    });
+  }
+
+  readPhy(peripheralId) {
+    return new Promise((fulfill, reject) => {
+      bleManager.readPhy(peripheralId, (error, phy) => {
+        if (error) {
+          reject(new BleError(error));
+        } else {
+          fulfill(phy);
+        }
+      });
+    });
+  }
+
   setName(name) {
     bleManager.setName(name);
   }
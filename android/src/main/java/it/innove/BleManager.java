@@ -13,10 +13,14 @@ import android.content.IntentSender;
 import android.content.pm.PackageManager;
 import android.location.LocationManager;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 
 import androidx.annotation.Nullable;
 
 import android.provider.Settings;
+import android.util.Base64;
 import android.util.Log;
 
 import com.facebook.react.bridge.ActivityEventListener;
@@ -30,13 +34,16 @@ import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.RCTNativeAppEventEmitter;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 import static android.app.Activity.RESULT_OK;
@@ -58,6 +65,7 @@ import com.google.android.gms.tasks.Task;
 class BleManager extends ReactContextBaseJavaModule {
 
     public static final String LOG_TAG = "ReactNativeBleManager";
+    public static final String PAYLOAD_FORMAT_BASE64 = "base64";
     private static final int ENABLE_BLUETOOTH_REQUEST = 539;
     private static final int ENABLE_LOCATION_REQUEST = 999;
 
@@ -70,6 +78,13 @@ class BleManager extends ReactContextBaseJavaModule {
     private Callback enableLocationCallback;
     private ScanManager scanManager;
     private boolean forceLegacy;
+    private volatile NotificationBatcher notificationBatcher;
+    private final EventDispatcher eventDispatcher;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile Handler[] gattHandlers;
+    private volatile long[] commandTimeouts = new long[GattCommand.Type.values().length];
+    private volatile GattCache gattCache;
+    private Runnable statsTask;
 
     public ReactApplicationContext getReactContext() {
         return reactContext;
@@ -103,8 +118,9 @@ class BleManager extends ReactContextBaseJavaModule {
         }
     };
 
-    // key is the MAC Address
-    private final Map<String, Peripheral> peripherals = new LinkedHashMap<>();
+    // key is the MAC Address. Scan results add peripherals from the GATT threads, the map locks
+    // itself on single calls and iterations hold synchronized (peripherals), the same lock.
+    private final Map<String, Peripheral> peripherals = Collections.synchronizedMap(new LinkedHashMap<>());
     // scan session id
 
     // wrapper to use completable future as a callback
@@ -123,6 +139,7 @@ class BleManager extends ReactContextBaseJavaModule {
         super(reactContext);
         context = reactContext;
         this.reactContext = reactContext;
+        this.eventDispatcher = new EventDispatcher(reactContext);
         reactContext.addActivityEventListener(mActivityEventListener);
         Log.d(LOG_TAG, "BleManager created");
     }
@@ -147,6 +164,37 @@ class BleManager extends ReactContextBaseJavaModule {
         return locationManager;
     }
 
+    public EventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
+    // Commands and GATT callbacks of a peripheral run on this handler: the main looper by
+    // default, or a thread of the pool created with the gattThreadPoolSize start option.
+    // The address picks the thread, so a device always lands on the same one.
+    public Handler getGattHandler(@Nullable String address) {
+        Handler[] handlers = gattHandlers;
+        if (handlers == null) {
+            return mainHandler;
+        }
+        int index = address == null ? 0 : Math.abs(address.hashCode() % handlers.length);
+        return handlers[index];
+    }
+
+    public NotificationBatcher getNotificationBatcher() {
+        return notificationBatcher;
+    }
+
+    // Time in ms a queued peripheral command may wait for its GATT callback, 0 means no limit
+    public long getCommandTimeout(GattCommand.Type type) {
+        return commandTimeouts[type.ordinal()];
+    }
+
+    // Store of the discovered service layouts, null when the gattCache option is off
+    @Nullable
+    public GattCache getGattCache() {
+        return gattCache;
+    }
+
     private BluetoothManager getBluetoothManager() {
         if (bluetoothManager == null) {
             bluetoothManager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
@@ -155,7 +203,7 @@ class BleManager extends ReactContextBaseJavaModule {
     }
 
     public void sendEvent(String eventName, @Nullable WritableMap params) {
-        getReactApplicationContext().getJSModule(RCTNativeAppEventEmitter.class).emit(eventName, params);
+        eventDispatcher.dispatch(eventName, params);
     }
 
     public static boolean handledInvalidState(BluetoothAdapter bluetoothAdapter, Callback callback) {
@@ -195,12 +243,69 @@ class BleManager extends ReactContextBaseJavaModule {
             forceLegacy = options.getBoolean("forceLegacy");
         }
 
+        if (gattHandlers == null && options.hasKey("gattThreadPoolSize") && options.getInt("gattThreadPoolSize") > 0) {
+            Handler[] handlers = new Handler[options.getInt("gattThreadPoolSize")];
+            for (int i = 0; i < handlers.length; i++) {
+                HandlerThread thread = new HandlerThread("BleManagerGatt-" + i);
+                thread.start();
+                handlers[i] = new Handler(thread.getLooper());
+            }
+            gattHandlers = handlers;
+        }
+
+        long[] timeouts = new long[GattCommand.Type.values().length];
+        if (options.hasKey("commandTimeouts")) {
+            ReadableMap timeoutOptions = options.getMap("commandTimeouts");
+            for (GattCommand.Type type : GattCommand.Type.values()) {
+                if (timeoutOptions.hasKey(type.getValue())) {
+                    timeouts[type.ordinal()] = timeoutOptions.getInt(type.getValue());
+                } else if (timeoutOptions.hasKey("default")) {
+                    timeouts[type.ordinal()] = timeoutOptions.getInt("default");
+                }
+            }
+        }
+        commandTimeouts = timeouts;
+
+        if (options.hasKey("gattCache") && options.getBoolean("gattCache")) {
+            if (gattCache == null) {
+                gattCache = new GattCache(reactContext);
+            }
+        } else {
+            gattCache = null;
+        }
+
+        if (statsTask != null) {
+            mainHandler.removeCallbacks(statsTask);
+            statsTask = null;
+        }
+        if (options.hasKey("statsInterval") && options.getInt("statsInterval") > 0) {
+            final int statsInterval = options.getInt("statsInterval");
+            statsTask = new Runnable() {
+                @Override
+                public void run() {
+                    emitPeripheralStats();
+                    mainHandler.postDelayed(this, statsInterval);
+                }
+            };
+            mainHandler.postDelayed(statsTask, statsInterval);
+        }
+
         if (Build.VERSION.SDK_INT >= LOLLIPOP && !forceLegacy) {
             scanManager = new LollipopScanManager(reactContext, this);
         } else {
             scanManager = new LegacyScanManager(reactContext, this);
         }
 
+        if (notificationBatcher != null) {
+            notificationBatcher.flush();
+            notificationBatcher = null;
+        }
+        if (options.hasKey("notificationBatchInterval") && options.getInt("notificationBatchInterval") > 0) {
+            int batchSize = options.hasKey("notificationBatchSize") ? options.getInt("notificationBatchSize") : 0;
+            notificationBatcher = new NotificationBatcher(this, getGattHandler(null),
+                    options.getInt("notificationBatchInterval"), batchSize);
+        }
+
         IntentFilter locationIntentFilter = new IntentFilter(LocationManager.MODE_CHANGED_ACTION);
         locationIntentFilter.setPriority(IntentFilter.SYSTEM_HIGH_PRIORITY);
         context.registerReceiver(mReceiver, locationIntentFilter);
@@ -355,7 +460,25 @@ class BleManager extends ReactContextBaseJavaModule {
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
             return;
         }
-        peripheral.connect(callback, getCurrentActivity());
+        peripheral.connect(eventDispatcher.ordered(callback), getCurrentActivity());
+    }
+
+    @ReactMethod
+    public void connectWithProfile(String peripheralUUID, ReadableMap profile, Callback callback) {
+        Log.d(LOG_TAG, "Connect with profile to: " + peripheralUUID);
+
+        try {
+            ConnectionProfile.validate(profile);
+        } catch (Exception e) {
+            callback.invoke(createtInvalidArgumentErrorWritableMap("Invalid profile: " + e.getMessage()));
+            return;
+        }
+        Peripheral peripheral = retrieveOrCreatePeripheral(peripheralUUID);
+        if (peripheral == null) {
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+            return;
+        }
+        peripheral.connectWithProfile(profile, getCurrentActivity(), eventDispatcher.ordered(callback));
     }
 
     @ReactMethod
@@ -364,14 +487,14 @@ class BleManager extends ReactContextBaseJavaModule {
 
         Peripheral peripheral = peripherals.get(peripheralUUID);
         if (peripheral != null) {
-            peripheral.disconnect(callback, force);
+            peripheral.disconnect(eventDispatcher.ordered(callback), force);
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
 
     @ReactMethod
     public void startNotificationUseBuffer(String deviceUUID, String serviceUUID, String characteristicUUID,
-                                           Integer buffer, Callback callback) {
+                                           Integer buffer, ReadableMap options, Callback callback) {
         Log.d(LOG_TAG, "startNotification");
 
         if (serviceUUID == null || characteristicUUID == null) {
@@ -381,13 +504,14 @@ class BleManager extends ReactContextBaseJavaModule {
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
             peripheral.registerNotify(UUIDHelper.uuidFromString(serviceUUID),
-                    UUIDHelper.uuidFromString(characteristicUUID), buffer, callback);
+                    UUIDHelper.uuidFromString(characteristicUUID), buffer, options, eventDispatcher.ordered(callback));
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
 
     @ReactMethod
-    public void startNotification(String deviceUUID, String serviceUUID, String characteristicUUID, Callback callback) {
+    public void startNotification(String deviceUUID, String serviceUUID, String characteristicUUID, ReadableMap options,
+                                  Callback callback) {
         Log.d(LOG_TAG, "startNotification");
 
         if (serviceUUID == null || characteristicUUID == null) {
@@ -397,7 +521,7 @@ class BleManager extends ReactContextBaseJavaModule {
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
             peripheral.registerNotify(UUIDHelper.uuidFromString(serviceUUID),
-                    UUIDHelper.uuidFromString(characteristicUUID), 1, callback);
+                    UUIDHelper.uuidFromString(characteristicUUID), 1, options, eventDispatcher.ordered(callback));
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
@@ -413,14 +537,14 @@ class BleManager extends ReactContextBaseJavaModule {
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
             peripheral.removeNotify(UUIDHelper.uuidFromString(serviceUUID),
-                    UUIDHelper.uuidFromString(characteristicUUID), callback);
+                    UUIDHelper.uuidFromString(characteristicUUID), eventDispatcher.ordered(callback));
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
 
     @ReactMethod
     public void write(String deviceUUID, String serviceUUID, String characteristicUUID, ReadableArray message,
-                      Integer maxByteSize, Callback callback) {
+                      Integer maxByteSize, ReadableMap options, Callback callback) {
         Log.d(LOG_TAG, "Write to: " + deviceUUID);
 
         if (serviceUUID == null || characteristicUUID == null) {
@@ -429,20 +553,19 @@ class BleManager extends ReactContextBaseJavaModule {
         }
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
-            byte[] decoded = new byte[message.size()];
-            for (int i = 0; i < message.size(); i++) {
-                decoded[i] = new Integer(message.getInt(i)).byteValue();
-            }
-            Log.d(LOG_TAG, "Message(" + decoded.length + "): " + bytesToHex(decoded));
+            byte[] decoded = readableArrayToBytes(message);
+            Log.d(LOG_TAG, "Message of " + decoded.length + " bytes");
             peripheral.write(UUIDHelper.uuidFromString(serviceUUID), UUIDHelper.uuidFromString(characteristicUUID),
-                    decoded, maxByteSize, null, callback, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+                    decoded, maxByteSize, options, eventDispatcher.ordered(callback),
+                    BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
 
     @ReactMethod
     public void writeWithoutResponse(String deviceUUID, String serviceUUID, String characteristicUUID,
-                                     ReadableArray message, Integer maxByteSize, Integer queueSleepTime, Callback callback) {
+                                     ReadableArray message, Integer maxByteSize, Integer queueSleepTime,
+                                     ReadableMap options, Callback callback) {
         Log.d(LOG_TAG, "Write without response to: " + deviceUUID);
 
         if (serviceUUID == null || characteristicUUID == null) {
@@ -451,19 +574,64 @@ class BleManager extends ReactContextBaseJavaModule {
         }
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
-            byte[] decoded = new byte[message.size()];
-            for (int i = 0; i < message.size(); i++) {
-                decoded[i] = new Integer(message.getInt(i)).byteValue();
-            }
-            Log.d(LOG_TAG, "Message(" + decoded.length + "): " + bytesToHex(decoded));
+            byte[] decoded = readableArrayToBytes(message);
+            Log.d(LOG_TAG, "Message of " + decoded.length + " bytes");
+            // queueSleepTime is for iOS, here a chunk is sent as soon as the stack accepted the previous one
             peripheral.write(UUIDHelper.uuidFromString(serviceUUID), UUIDHelper.uuidFromString(characteristicUUID),
-                    decoded, maxByteSize, queueSleepTime, callback, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+                    decoded, maxByteSize, options, eventDispatcher.ordered(callback),
+                    BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
 
     @ReactMethod
-    public void read(String deviceUUID, String serviceUUID, String characteristicUUID, Callback callback) {
+    public void writeBase64(String deviceUUID, String serviceUUID, String characteristicUUID, String message,
+                            Integer maxByteSize, ReadableMap options, Callback callback) {
+        Log.d(LOG_TAG, "Write base64 to: " + deviceUUID);
+        writeBase64(deviceUUID, serviceUUID, characteristicUUID, message, maxByteSize, options, callback,
+                BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+    }
+
+    @ReactMethod
+    public void writeWithoutResponseBase64(String deviceUUID, String serviceUUID, String characteristicUUID,
+                                           String message, Integer maxByteSize, ReadableMap options,
+                                           Callback callback) {
+        Log.d(LOG_TAG, "Write base64 without response to: " + deviceUUID);
+        writeBase64(deviceUUID, serviceUUID, characteristicUUID, message, maxByteSize, options, callback,
+                BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+    }
+
+    // The payload crosses the bridge as one string and is decoded in a single pass
+    private void writeBase64(String deviceUUID, String serviceUUID, String characteristicUUID, String message,
+                             Integer maxByteSize, ReadableMap options, Callback callback, int writeType) {
+        if (serviceUUID == null || characteristicUUID == null) {
+            callback.invoke(createtInvalidArgumentErrorWritableMap("ServiceUUID and characteristicUUID required."));
+            return;
+        }
+        if (message == null) {
+            callback.invoke(createtInvalidArgumentErrorWritableMap("Base64 data required."));
+            return;
+        }
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral == null) {
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+            return;
+        }
+        byte[] decoded;
+        try {
+            decoded = Base64.decode(message, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            callback.invoke(createtInvalidArgumentErrorWritableMap("Invalid base64 data."));
+            return;
+        }
+        Log.d(LOG_TAG, "Message of " + decoded.length + " bytes");
+        peripheral.write(UUIDHelper.uuidFromString(serviceUUID), UUIDHelper.uuidFromString(characteristicUUID),
+                decoded, maxByteSize, options, eventDispatcher.ordered(callback), writeType);
+    }
+
+    @ReactMethod
+    public void read(String deviceUUID, String serviceUUID, String characteristicUUID, ReadableMap options,
+                     Callback callback) {
         Log.d(LOG_TAG, "Read from: " + deviceUUID);
 
         if (serviceUUID == null || characteristicUUID == null) {
@@ -473,7 +641,46 @@ class BleManager extends ReactContextBaseJavaModule {
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
             peripheral.read(UUIDHelper.uuidFromString(serviceUUID), UUIDHelper.uuidFromString(characteristicUUID),
-                    callback);
+                    options, eventDispatcher.ordered(callback));
+        } else
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+    }
+
+    @ReactMethod
+    public void readByHandle(String deviceUUID, Integer handle, ReadableMap options, Callback callback) {
+        Log.d(LOG_TAG, "Read handle " + handle + " from: " + deviceUUID);
+
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null) {
+            peripheral.readByHandle(handle, options, eventDispatcher.ordered(callback));
+        } else
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+    }
+
+    @ReactMethod
+    public void writeByHandle(String deviceUUID, Integer handle, ReadableArray message, Integer maxByteSize,
+                              ReadableMap options, Callback callback) {
+        Log.d(LOG_TAG, "Write to handle " + handle + " of: " + deviceUUID);
+
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null) {
+            byte[] decoded = readableArrayToBytes(message);
+            boolean withoutResponse = options != null && options.hasKey("withoutResponse")
+                    && options.getBoolean("withoutResponse");
+            peripheral.writeByHandle(handle, decoded, maxByteSize, options, eventDispatcher.ordered(callback),
+                    withoutResponse ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+                            : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+        } else
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+    }
+
+    @ReactMethod
+    public void writeReliable(String deviceUUID, ReadableArray writes, ReadableMap options, Callback callback) {
+        Log.d(LOG_TAG, "Reliable write of " + writes.size() + " values to: " + deviceUUID);
+
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null) {
+            peripheral.writeReliable(writes, options, eventDispatcher.ordered(callback));
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
@@ -484,7 +691,14 @@ class BleManager extends ReactContextBaseJavaModule {
 
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
-            peripheral.retrieveServices(callback);
+            Set<UUID> serviceFilter = null;
+            if (services != null && services.size() > 0) {
+                serviceFilter = new HashSet<>();
+                for (int i = 0; i < services.size(); i++) {
+                    serviceFilter.add(UUIDHelper.uuidFromString(services.getString(i)));
+                }
+            }
+            peripheral.retrieveServices(serviceFilter, eventDispatcher.ordered(callback));
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
@@ -495,18 +709,80 @@ class BleManager extends ReactContextBaseJavaModule {
 
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
-            peripheral.refreshCache(callback);
+            peripheral.refreshCache(eventDispatcher.ordered(callback));
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
 
     @ReactMethod
-    public void readRSSI(String deviceUUID, Callback callback) {
+    public void readRSSI(String deviceUUID, ReadableMap options, Callback callback) {
         Log.d(LOG_TAG, "Read RSSI from: " + deviceUUID);
 
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
-            peripheral.readRSSI(callback);
+            peripheral.readRSSI(options, eventDispatcher.ordered(callback));
+        } else
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+    }
+
+    @ReactMethod
+    public void setReadCachePolicy(String deviceUUID, String serviceUUID, String characteristicUUID, Integer ttl,
+                                   Callback callback) {
+        Log.d(LOG_TAG, "Set read cache policy of " + characteristicUUID + " on: " + deviceUUID);
+
+        if (serviceUUID == null || characteristicUUID == null) {
+            callback.invoke(createtInvalidArgumentErrorWritableMap("ServiceUUID and characteristicUUID required."));
+            return;
+        }
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null) {
+            peripheral.setReadCachePolicy(UUIDHelper.uuidFromString(serviceUUID),
+                    UUIDHelper.uuidFromString(characteristicUUID), ttl);
+            callback.invoke();
+        } else
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+    }
+
+    @ReactMethod
+    public void cancelOperations(String deviceUUID, String tag, Callback callback) {
+        Log.d(LOG_TAG, "Cancel operations tagged " + tag + " on: " + deviceUUID);
+
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null) {
+            callback.invoke(null, peripheral.cancelOperations(tag));
+        } else
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+    }
+
+    @ReactMethod
+    public void executeBatch(String deviceUUID, ReadableArray operations, ReadableMap options, Callback callback) {
+        Log.d(LOG_TAG, "Execute batch of " + operations.size() + " operations on: " + deviceUUID);
+
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null) {
+            peripheral.executeBatch(operations, options, eventDispatcher.ordered(callback));
+        } else
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+    }
+
+    @ReactMethod
+    public void getConnectionParameters(String deviceUUID, Callback callback) {
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null && peripheral.isConnected()) {
+            callback.invoke(null, peripheral.getConnectionParameters());
+        } else if (peripheral != null) {
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
+        } else
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+    }
+
+    @ReactMethod
+    public void getPeripheralStats(String deviceUUID, Callback callback) {
+        Log.d(LOG_TAG, "Get stats of: " + deviceUUID);
+
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null) {
+            callback.invoke(null, peripheral.getStats());
         } else
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
     }
@@ -517,9 +793,9 @@ class BleManager extends ReactContextBaseJavaModule {
             if (!peripherals.containsKey(address)) {
                 Peripheral peripheral;
                 if (Build.VERSION.SDK_INT >= LOLLIPOP && !forceLegacy) {
-                    peripheral = new LollipopPeripheral(device, reactContext);
+                    peripheral = new LollipopPeripheral(device, this);
                 } else {
-                    peripheral = new Peripheral(device, reactContext);
+                    peripheral = new Peripheral(device, this);
                 }
                 peripherals.put(device.getAddress(), peripheral);
             }
@@ -627,6 +903,16 @@ class BleManager extends ReactContextBaseJavaModule {
         }
     }
 
+    private void emitPeripheralStats() {
+        synchronized (peripherals) {
+            for (Peripheral peripheral : peripherals.values()) {
+                if (peripheral.isConnected()) {
+                    sendEvent("BleManagerPeripheralStats", peripheral.getStats());
+                }
+            }
+        }
+    }
+
     private void disconnectPeripherals() {
         if (!peripherals.isEmpty()) {
             synchronized (peripherals) {
@@ -716,7 +1002,31 @@ class BleManager extends ReactContextBaseJavaModule {
 
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
-            peripheral.requestConnectionPriority(connectionPriority, callback);
+            peripheral.requestConnectionPriority(connectionPriority, eventDispatcher.ordered(callback));
+        } else {
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+        }
+    }
+
+    @ReactMethod
+    public void setPreferredPhy(String deviceUUID, int txPhy, int rxPhy, int phyOptions, Callback callback) {
+        Log.d(LOG_TAG, "Set preferred PHY " + txPhy + "/" + rxPhy + " on: " + deviceUUID);
+
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null) {
+            peripheral.setPreferredPhy(txPhy, rxPhy, phyOptions, eventDispatcher.ordered(callback));
+        } else {
+            callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
+        }
+    }
+
+    @ReactMethod
+    public void readPhy(String deviceUUID, Callback callback) {
+        Log.d(LOG_TAG, "Read PHY of: " + deviceUUID);
+
+        Peripheral peripheral = peripherals.get(deviceUUID);
+        if (peripheral != null) {
+            peripheral.readPhy(eventDispatcher.ordered(callback));
         } else {
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
         }
@@ -728,7 +1038,7 @@ class BleManager extends ReactContextBaseJavaModule {
 
         Peripheral peripheral = peripherals.get(deviceUUID);
         if (peripheral != null) {
-            peripheral.requestMTU(mtu, callback);
+            peripheral.requestMTU(mtu, eventDispatcher.ordered(callback));
         } else {
             callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_FOUND));
         }
@@ -746,13 +1056,38 @@ class BleManager extends ReactContextBaseJavaModule {
         return new String(hexChars);
     }
 
+    public static byte[] readableArrayToBytes(ReadableArray array) {
+        byte[] bytes = new byte[array.size()];
+        for (int i = 0; i < array.size(); i++) {
+            bytes[i] = (byte) array.getInt(i);
+        }
+        return bytes;
+    }
+
     public static WritableArray bytesToWritableArray(byte[] bytes) {
+        return bytesToWritableArray(bytes, bytes.length);
+    }
+
+    public static WritableArray bytesToWritableArray(byte[] bytes, int length) {
         WritableArray value = Arguments.createArray();
-        for (int i = 0; i < bytes.length; i++)
+        for (int i = 0; i < length; i++)
             value.pushInt((bytes[i] & 0xFF));
         return value;
     }
 
+    public static String bytesToBase64(byte[] bytes) {
+        return bytesToBase64(bytes, bytes.length);
+    }
+
+    public static String bytesToBase64(byte[] bytes, int length) {
+        return Base64.encodeToString(bytes, 0, length, Base64.NO_WRAP);
+    }
+
+    // payloadFormat option: "array" (default) emits an int per byte, "base64" a single string
+    public static boolean isBase64PayloadFormat(@Nullable ReadableMap options) {
+        return options != null && options.hasKey("payloadFormat")
+                && PAYLOAD_FORMAT_BASE64.equals(options.getString("payloadFormat"));
+    }
 
     private Peripheral retrieveOrCreatePeripheral(String peripheralUUID) {
         Peripheral peripheral = peripherals.get(peripheralUUID);
@@ -760,13 +1095,15 @@ class BleManager extends ReactContextBaseJavaModule {
             synchronized (peripherals) {
                 if (peripheralUUID != null) {
                     peripheralUUID = peripheralUUID.toUpperCase();
+                    // a scan result may have added it meanwhile
+                    peripheral = peripherals.get(peripheralUUID);
                 }
-                if (BluetoothAdapter.checkBluetoothAddress(peripheralUUID)) {
+                if (peripheral == null && BluetoothAdapter.checkBluetoothAddress(peripheralUUID)) {
                     BluetoothDevice device = bluetoothAdapter.getRemoteDevice(peripheralUUID);
                     if (Build.VERSION.SDK_INT >= LOLLIPOP && !forceLegacy) {
-                        peripheral = new LollipopPeripheral(device, reactContext);
+                        peripheral = new LollipopPeripheral(device, this);
                     } else {
-                        peripheral = new Peripheral(device, reactContext);
+                        peripheral = new Peripheral(device, this);
                     }
                     peripherals.put(peripheralUUID, peripheral);
                 }
@@ -799,5 +1136,25 @@ class BleManager extends ReactContextBaseJavaModule {
             // Stop scan in case one was started to stop events from being emitted after destroy
             scanManager.stopScan(args -> {});
         }
+
+        if (notificationBatcher != null) {
+            notificationBatcher.stop();
+            notificationBatcher = null;
+        }
+
+        if (statsTask != null) {
+            mainHandler.removeCallbacks(statsTask);
+            statsTask = null;
+        }
+
+        eventDispatcher.stop();
+
+        Handler[] handlers = gattHandlers;
+        if (handlers != null) {
+            gattHandlers = null;
+            for (Handler handler : handlers) {
+                handler.getLooper().quitSafely();
+            }
+        }
     }
 }
@@ -0,0 +1,79 @@
+package it.innove;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The callbacks of the reads of one characteristic that share a single GATT read.
+ * Invoked with (error) or (null, byte[]), it forwards the result to every waiting
+ * callback in the payload format that callback asked for.
+ */
+public class CoalescedRead implements Callback {
+
+	private final List<Callback> callbacks = new ArrayList<>();
+	private final List<Boolean> base64 = new ArrayList<>();
+	private boolean started = false;
+	private boolean done = false;
+
+	public CoalescedRead(Callback callback, boolean base64) {
+		this.callbacks.add(callback);
+		this.base64.add(base64);
+	}
+
+	// Adds a callback to the read, false if the GATT read already started
+	public synchronized boolean join(Callback callback, boolean base64) {
+		if (started || done) {
+			return false;
+		}
+		this.callbacks.add(callback);
+		this.base64.add(base64);
+		return true;
+	}
+
+	public synchronized void start() {
+		started = true;
+	}
+
+	public synchronized int size() {
+		return callbacks.size();
+	}
+
+	@Override
+	public void invoke(Object... args) {
+		synchronized (this) {
+			if (done) {
+				return;
+			}
+			done = true;
+		}
+
+		for (int i = 0; i < callbacks.size(); i++) {
+			Callback callback = callbacks.get(i);
+			if (args.length > 0 && args[0] != null) {
+				callback.invoke(copyError(args[0]));
+			} else {
+				byte[] value = args.length > 1 ? (byte[]) args[1] : new byte[0];
+				if (base64.get(i)) {
+					callback.invoke(null, BleManager.bytesToBase64(value));
+				} else {
+					callback.invoke(null, BleManager.bytesToWritableArray(value));
+				}
+			}
+		}
+	}
+
+	// A map can be passed to JS only once, every callback gets its own copy
+	private static Object copyError(Object error) {
+		if (error instanceof ReadableMap) {
+			WritableMap copy = Arguments.createMap();
+			copy.merge((ReadableMap) error);
+			return copy;
+		}
+		return error;
+	}
+}
@@ -0,0 +1,231 @@
+package it.innove;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.UUID;
+
+import static it.innove.ErrorHelper.createUnexpectedErrorWritableMap;
+import static it.innove.ErrorHelper.createtInvalidArgumentErrorWritableMap;
+
+/**
+ * One connectWithProfile call. Once connected every stage of the profile is enqueued at
+ * once, so they run back to back on the command queue without going through JS. The first
+ * stage that fails ends the profile and the results of the remaining ones are ignored; the
+ * peripheral is disconnected if the profile made the connection.
+ */
+public class ConnectionProfile {
+
+	private final Peripheral peripheral;
+	private final ReadableMap profile;
+	private final Callback callback;
+	private final long startedAt = SystemClock.uptimeMillis();
+	// end of the last stage, the time of a stage is counted from there
+	private long lastStageAt = startedAt;
+	private final WritableMap timings = Arguments.createMap();
+	private final WritableMap result = Arguments.createMap();
+	private int pending = 0;
+	private int pendingNotifications = 0;
+	private boolean finished = false;
+	// false when the peripheral was connected before the profile, a failure must not drop it then
+	private boolean ownsConnection;
+
+	public ConnectionProfile(Peripheral peripheral, ReadableMap profile, Callback callback) {
+		this.peripheral = peripheral;
+		this.profile = profile;
+		this.callback = callback;
+	}
+
+	// Throws if a key of the profile has the wrong type, the stages run on the GATT thread
+	// where such an error must not happen
+	public static void validate(ReadableMap profile) {
+		requireNumber(profile, "mtu");
+		requireNumber(profile, "connectionPriority");
+		if (profile.hasKey("retrieveServices") && profile.getType("retrieveServices") != ReadableType.Boolean) {
+			throw new IllegalArgumentException("retrieveServices must be a boolean");
+		}
+		if (profile.hasKey("phy")) {
+			ReadableMap phy = profile.getMap("phy");
+			if (phy == null || !phy.hasKey("txPhy") || !phy.hasKey("rxPhy")) {
+				throw new IllegalArgumentException("phy requires txPhy and rxPhy");
+			}
+			requireNumber(phy, "txPhy");
+			requireNumber(phy, "rxPhy");
+			requireNumber(phy, "phyOptions");
+		}
+		if (profile.hasKey("notifications")) {
+			ReadableArray notifications = profile.getArray("notifications");
+			for (int i = 0; notifications != null && i < notifications.size(); i++) {
+				ReadableMap notification = notifications.getMap(i);
+				if (notification == null) {
+					throw new IllegalArgumentException("notification " + i + " must be an object");
+				}
+				UUIDHelper.uuidFromString(notification.getString("service"));
+				UUIDHelper.uuidFromString(notification.getString("characteristic"));
+			}
+		}
+	}
+
+	private static void requireNumber(ReadableMap map, String key) {
+		if (map.hasKey(key) && map.getType(key) != ReadableType.Number) {
+			throw new IllegalArgumentException(key + " must be a number");
+		}
+	}
+
+	public void start(Activity activity) {
+		ownsConnection = !peripheral.isConnected() && !peripheral.isConnecting();
+		pending = 1;
+		peripheral.connect(stage("connect"), activity);
+	}
+
+	private void enqueueStages() {
+		ReadableArray notifications = profile.hasKey("notifications") ? profile.getArray("notifications") : null;
+		boolean mtu = profile.hasKey("mtu");
+		ReadableMap phy = profile.hasKey("phy") ? profile.getMap("phy") : null;
+		boolean connectionPriority = profile.hasKey("connectionPriority");
+		boolean retrieveServices = notifications != null && notifications.size() > 0
+				|| profile.hasKey("retrieveServices") && profile.getBoolean("retrieveServices");
+
+		int stages = (mtu ? 1 : 0) + (phy != null ? 1 : 0) + (connectionPriority ? 1 : 0) + (retrieveServices ? 1 : 0)
+				+ (notifications != null ? notifications.size() : 0);
+		synchronized (this) {
+			pending = stages;
+			pendingNotifications = notifications != null ? notifications.size() : 0;
+		}
+		if (stages == 0) {
+			finish();
+			return;
+		}
+
+		// validate() already checked the profile, an error here still must not escape to the GATT thread
+		if (mtu) {
+			Callback stage = stage("mtu");
+			try {
+				peripheral.requestMTU(profile.getInt("mtu"), stage);
+			} catch (Exception e) {
+				stage.invoke(createtInvalidArgumentErrorWritableMap("Invalid mtu: " + e.getMessage()));
+			}
+		}
+		if (phy != null) {
+			Callback stage = stage("phy");
+			try {
+				peripheral.setPreferredPhy(phy.getInt("txPhy"), phy.getInt("rxPhy"),
+						phy.hasKey("phyOptions") ? phy.getInt("phyOptions") : 0, stage);
+			} catch (Exception e) {
+				stage.invoke(createtInvalidArgumentErrorWritableMap("Invalid phy: " + e.getMessage()));
+			}
+		}
+		if (connectionPriority) {
+			Callback stage = stage("connectionPriority");
+			try {
+				peripheral.requestConnectionPriority(profile.getInt("connectionPriority"), stage);
+			} catch (Exception e) {
+				stage.invoke(createtInvalidArgumentErrorWritableMap("Invalid connectionPriority: " + e.getMessage()));
+			}
+		}
+		if (retrieveServices) {
+			peripheral.retrieveServices(null, stage("retrieveServices"));
+		}
+		if (notifications != null) {
+			for (int i = 0; i < notifications.size(); i++) {
+				Callback stage = stage("notifications");
+				try {
+					ReadableMap notification = notifications.getMap(i);
+					UUID serviceUUID = UUIDHelper.uuidFromString(notification.getString("service"));
+					UUID characteristicUUID = UUIDHelper.uuidFromString(notification.getString("characteristic"));
+					ReadableMap options = notification.hasKey("options") ? notification.getMap("options") : null;
+					peripheral.registerNotify(serviceUUID, characteristicUUID, 1, options, stage);
+				} catch (Exception e) {
+					stage.invoke(createtInvalidArgumentErrorWritableMap(
+							"Invalid notification at index " + i + ": " + e.getMessage()));
+				}
+			}
+		}
+	}
+
+	private Callback stage(String name) {
+		return args -> {
+			if (args.length > 0 && args[0] != null) {
+				fail(name, args[0]);
+			} else {
+				succeed(name, args.length > 1 ? args[1] : null);
+			}
+		};
+	}
+
+	private void succeed(String name, Object value) {
+		boolean done;
+		synchronized (this) {
+			if (finished) {
+				return;
+			}
+			if (name.equals("notifications") && --pendingNotifications > 0) {
+				// the stage ends with the last subscription
+				pending--;
+				return;
+			}
+			long now = SystemClock.uptimeMillis();
+			timings.putDouble(name, now - lastStageAt);
+			lastStageAt = now;
+			if (name.equals("mtu") && value instanceof Integer) {
+				result.putInt("mtu", (Integer) value);
+			} else if (name.equals("phy") && value instanceof WritableMap) {
+				result.putMap("phy", (WritableMap) value);
+			} else if (name.equals("retrieveServices") && value instanceof WritableMap) {
+				result.putMap("peripheralInfo", (WritableMap) value);
+			}
+			done = --pending == 0;
+		}
+		if (name.equals("connect")) {
+			enqueueStages();
+		} else if (done) {
+			finish();
+		}
+	}
+
+	private void finish() {
+		synchronized (this) {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			timings.putDouble("total", SystemClock.uptimeMillis() - startedAt);
+			result.putMap("timings", timings);
+		}
+		callback.invoke(null, result);
+	}
+
+	private void fail(String name, Object error) {
+		WritableMap errorMap;
+		synchronized (this) {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			errorMap = Arguments.createMap();
+			if (error instanceof WritableMap) {
+				errorMap.merge((WritableMap) error);
+			} else {
+				errorMap.merge(createUnexpectedErrorWritableMap(error.toString()));
+			}
+			errorMap.putString("stage", name);
+			timings.putDouble("total", SystemClock.uptimeMillis() - startedAt);
+			errorMap.putMap("timings", timings);
+		}
+		Log.d(BleManager.LOG_TAG, "connectWithProfile failed at " + name + " on peripheral: "
+				+ peripheral.getDevice().getAddress());
+		if (ownsConnection) {
+			// drops the connection and fails the stages still queued
+			peripheral.disconnect(args -> {}, true);
+		}
+		callback.invoke(errorMap);
+	}
+}
@@ -60,7 +60,9 @@ public final class ErrorHelper {
         BT_DISABLED(8),
         BT_UNSUPPORTED(9),
         GUI_RESOURCE_UNAVAILABLE(10),
-        CONNECTION_LIMIT_REACHED(11);
+        CONNECTION_LIMIT_REACHED(11),
+        OPERATION_TIMEOUT(12),
+        OPERATION_CANCELLED(13);
 
         private final int value;
 
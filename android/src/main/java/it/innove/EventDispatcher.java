@@ -0,0 +1,115 @@
+package it.innove;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.RCTNativeAppEventEmitter;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single path for every native to JS event. Producers (binder threads, handlers, the module)
+ * only append to a lock-free queue; one dedicated thread emits the events in order, so events
+ * of the same peripheral always reach JS in the order they were produced.
+ * After each burst the emitter waits for the JS thread to catch up, which keeps the backlog
+ * on the native side where bounded notification queues can apply their drop policy.
+ */
+public class EventDispatcher {
+
+	private static final int MAX_BURST = 64;
+	private static final long JS_WAIT_SLICE_MS = 100;
+
+	private final ReactContext reactContext;
+	private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	public EventDispatcher(ReactContext reactContext) {
+		this.reactContext = reactContext;
+		this.thread = new Thread(this::run, "BleManagerEventDispatcher");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public void dispatch(String eventName, @Nullable WritableMap params) {
+		if (Thread.currentThread() == thread) {
+			emit(eventName, params);
+		} else {
+			enqueue(() -> emit(eventName, params));
+		}
+	}
+
+	// runs the task on the dispatcher thread, in order with the events
+	public void enqueue(Runnable task) {
+		queue.add(task);
+		LockSupport.unpark(thread);
+	}
+
+	// The callback is invoked on the dispatcher thread, so JS gets the result of an operation
+	// after the events the peripheral produced before it completed
+	public Callback ordered(Callback callback) {
+		return args -> enqueue(() -> callback.invoke(args));
+	}
+
+	public void stop() {
+		running = false;
+		queue.clear();
+		LockSupport.unpark(thread);
+	}
+
+	private void emit(String eventName, @Nullable WritableMap params) {
+		try {
+			reactContext.getJSModule(RCTNativeAppEventEmitter.class).emit(eventName, params);
+		} catch (Exception e) {
+			Log.e(BleManager.LOG_TAG, "Could not emit " + eventName, e);
+		}
+	}
+
+	private void run() {
+		while (running) {
+			Runnable task = queue.poll();
+			if (task == null) {
+				LockSupport.park(this);
+				continue;
+			}
+
+			int emitted = 0;
+			do {
+				try {
+					task.run();
+				} catch (Exception e) {
+					Log.e(BleManager.LOG_TAG, "Error dispatching event", e);
+				}
+			} while (++emitted < MAX_BURST && (task = queue.poll()) != null);
+
+			awaitJSThread();
+		}
+	}
+
+	private void awaitJSThread() {
+		if (!reactContext.hasActiveCatalystInstance()) {
+			return;
+		}
+		CountDownLatch latch = new CountDownLatch(1);
+		try {
+			reactContext.runOnJSQueueThread(latch::countDown);
+			while (running && !latch.await(JS_WAIT_SLICE_MS, TimeUnit.MILLISECONDS)) {
+				if (!reactContext.hasActiveCatalystInstance()) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+		} catch (Exception e) {
+			Log.d(BleManager.LOG_TAG, "Could not wait for the JS thread", e);
+		}
+	}
+}
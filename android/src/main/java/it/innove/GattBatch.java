@@ -0,0 +1,109 @@
+package it.innove;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Collects the results of the operations of an executeBatch call and invokes the
+ * JS callback once, when every operation has reported.
+ */
+public class GattBatch {
+
+	private final WritableMap[] results;
+	private final boolean stopOnError;
+	private final Callback callback;
+	private int pending;
+	// index of the first failed operation with stopOnError, the ones after it are skipped
+	private int stoppedAt = Integer.MAX_VALUE;
+
+	public GattBatch(int size, boolean stopOnError, Callback callback) {
+		this.results = new WritableMap[size];
+		this.pending = size;
+		this.stopOnError = stopOnError;
+		this.callback = callback;
+		if (size == 0) {
+			callback.invoke(null, Arguments.createArray());
+		}
+	}
+
+	public Op op(int index) {
+		return new Op(index);
+	}
+
+	private synchronized boolean isStoppedBefore(int index) {
+		return stoppedAt < index;
+	}
+
+	private void complete(int index, WritableMap result, boolean failed) {
+		WritableArray array = null;
+		synchronized (this) {
+			if (results[index] != null) {
+				return;
+			}
+			results[index] = result;
+			if (failed && stopOnError && index < stoppedAt) {
+				stoppedAt = index;
+			}
+			if (--pending == 0) {
+				array = Arguments.createArray();
+				for (WritableMap item : results) {
+					array.pushMap(item);
+				}
+			}
+		}
+		if (array != null) {
+			callback.invoke(null, array);
+		}
+	}
+
+	/**
+	 * Callback of a single operation, the result is stored at the index of the operation.
+	 */
+	public class Op implements Callback {
+
+		private final int index;
+
+		private Op(int index) {
+			this.index = index;
+		}
+
+		// true when an operation before this one failed and the batch stops on error
+		public boolean isSkipped() {
+			return isStoppedBefore(index);
+		}
+
+		public void skip() {
+			WritableMap result = Arguments.createMap();
+			result.putBoolean("skipped", true);
+			complete(index, result, false);
+		}
+
+		@Override
+		public void invoke(Object... args) {
+			WritableMap result = Arguments.createMap();
+			if (args.length > 0 && args[0] != null) {
+				if (args[0] instanceof WritableMap) {
+					result.putMap("error", (WritableMap) args[0]);
+				} else {
+					result.putString("error", args[0].toString());
+				}
+				complete(index, result, true);
+				return;
+			}
+
+			Object value = args.length > 1 ? args[1] : null;
+			if (value instanceof WritableArray) {
+				result.putArray("value", (WritableArray) value);
+			} else if (value instanceof String) {
+				result.putString("value", (String) value);
+			} else if (value instanceof Integer) {
+				result.putInt("value", (Integer) value);
+			} else if (value instanceof Boolean) {
+				result.putBoolean("value", (Boolean) value);
+			}
+			complete(index, result, false);
+		}
+	}
+}
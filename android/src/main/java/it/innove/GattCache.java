@@ -0,0 +1,179 @@
+package it.innove;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Service layouts of the peripherals stored in the app cache directory, one small binary
+ * file for each device address. A file starts with a magic number, the format version and a
+ * CRC32 of the layout, a file that doesn't match is ignored.
+ */
+public class GattCache {
+
+	private static final int MAGIC = 0x42474331;
+	private static final int VERSION = 1;
+
+	private final File directory;
+	// file I/O stays off the GATT threads, one at a time and the thread ends when idle
+	private final ExecutorService executor = new ThreadPoolExecutor(0, 1, 10, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>());
+
+	public GattCache(Context context) {
+		this.directory = new File(context.getCacheDir(), "BleManagerGattCache");
+	}
+
+	private File file(String address) {
+		return new File(directory, address.replace(":", "") + ".bin");
+	}
+
+	// Reads the stored layout of the device on the cache thread and passes it to the consumer
+	// there, null if there is none or it is not valid
+	public void load(String address, Consumer<byte[]> consumer) {
+		executor.execute(() -> consumer.accept(load(address)));
+	}
+
+	@Nullable
+	private byte[] load(String address) {
+		File file = file(address);
+		if (!file.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			long crc = in.readLong();
+			byte[] layout = new byte[in.readInt()];
+			in.readFully(layout);
+			return crc(layout) == crc ? layout : null;
+		} catch (IOException e) {
+			Log.d(BleManager.LOG_TAG, "Could not load the GATT cache of " + address, e);
+			return null;
+		}
+	}
+
+	public void save(String address, byte[] layout) {
+		executor.execute(() -> {
+			if (!directory.exists() && !directory.mkdirs()) {
+				return;
+			}
+			File file = file(address);
+			File temp = new File(directory, file.getName() + ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(crc(layout));
+				out.writeInt(layout.length);
+				out.write(layout);
+			} catch (IOException e) {
+				Log.d(BleManager.LOG_TAG, "Could not save the GATT cache of " + address, e);
+				temp.delete();
+				return;
+			}
+			if (!temp.renameTo(file)) {
+				temp.delete();
+			}
+		});
+	}
+
+	public void delete(String address) {
+		executor.execute(() -> file(address).delete());
+	}
+
+	private static long crc(byte[] layout) {
+		CRC32 crc = new CRC32();
+		crc.update(layout);
+		return crc.getValue();
+	}
+
+	public static byte[] encode(List<BluetoothGattService> services) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeShort(services.size());
+			for (BluetoothGattService service : services) {
+				writeUUID(out, service.getUuid());
+				out.writeShort(service.getInstanceId());
+				out.writeByte(service.getType());
+				out.writeShort(service.getCharacteristics().size());
+				for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+					writeUUID(out, characteristic.getUuid());
+					out.writeShort(characteristic.getInstanceId());
+					out.writeShort(characteristic.getProperties());
+					out.writeShort(characteristic.getPermissions());
+					out.writeShort(characteristic.getDescriptors().size());
+					for (BluetoothGattDescriptor descriptor : characteristic.getDescriptors()) {
+						writeUUID(out, descriptor.getUuid());
+						out.writeShort(descriptor.getPermissions());
+					}
+				}
+			}
+		} catch (IOException e) {
+			// not thrown by a ByteArrayOutputStream
+		}
+		return bytes.toByteArray();
+	}
+
+	// Rebuilds the layout as detached GATT objects, good to describe the services but not
+	// to run operations on them. Instance ids are not restored.
+	@Nullable
+	public static List<BluetoothGattService> decode(byte[] layout) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(layout))) {
+			int serviceCount = in.readUnsignedShort();
+			List<BluetoothGattService> services = new ArrayList<>(serviceCount);
+			for (int i = 0; i < serviceCount; i++) {
+				UUID serviceUUID = readUUID(in);
+				in.readUnsignedShort();
+				BluetoothGattService service = new BluetoothGattService(serviceUUID, in.readUnsignedByte());
+				int characteristicCount = in.readUnsignedShort();
+				for (int j = 0; j < characteristicCount; j++) {
+					UUID characteristicUUID = readUUID(in);
+					in.readUnsignedShort();
+					BluetoothGattCharacteristic characteristic = new BluetoothGattCharacteristic(characteristicUUID,
+							in.readUnsignedShort(), in.readUnsignedShort());
+					int descriptorCount = in.readUnsignedShort();
+					for (int k = 0; k < descriptorCount; k++) {
+						characteristic.addDescriptor(new BluetoothGattDescriptor(readUUID(in), in.readUnsignedShort()));
+					}
+					service.addCharacteristic(characteristic);
+				}
+				services.add(service);
+			}
+			return services;
+		} catch (IOException e) {
+			Log.d(BleManager.LOG_TAG, "Invalid GATT cache", e);
+			return null;
+		}
+	}
+
+	private static void writeUUID(DataOutputStream out, UUID uuid) throws IOException {
+		out.writeLong(uuid.getMostSignificantBits());
+		out.writeLong(uuid.getLeastSignificantBits());
+	}
+
+	private static UUID readUUID(DataInputStream in) throws IOException {
+		return new UUID(in.readLong(), in.readLong());
+	}
+}
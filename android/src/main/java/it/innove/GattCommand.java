@@ -0,0 +1,95 @@
+package it.innove;
+
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.ReadableMap;
+
+/**
+ * An operation waiting in, or running from, the Peripheral command queue.
+ */
+public class GattCommand {
+
+	public enum Type {
+		CONNECT("connect"),
+		READ("read"),
+		WRITE("write"),
+		NOTIFY("notify"),
+		RSSI("rssi"),
+		MTU("mtu"),
+		DISCOVER("discover"),
+		CONNECTION_PRIORITY("connectionPriority"),
+		REFRESH("refresh"),
+		PHY("phy"),
+		RELIABLE_WRITE("reliableWrite");
+
+		private final String value;
+
+		Type(String value) {
+			this.value = value;
+		}
+
+		public String getValue() {
+			return value;
+		}
+	}
+
+	public enum Priority {
+		HIGH("high"),
+		NORMAL("normal"),
+		LOW("low");
+
+		private final String value;
+
+		Priority(String value) {
+			this.value = value;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public static Priority fromOptions(@Nullable ReadableMap options) {
+			if (options != null && options.hasKey("priority")) {
+				String value = options.getString("priority");
+				for (Priority priority : values()) {
+					if (priority.value.equals(value)) {
+						return priority;
+					}
+				}
+			}
+			return NORMAL;
+		}
+	}
+
+	public final Type type;
+	public final Priority priority;
+	public final Runnable action;
+	// commands with a tag can be cancelled until they start, the callback is then
+	// completed with OPERATION_CANCELLED
+	@Nullable
+	public final String tag;
+	@Nullable
+	public final Callback callback;
+	// set when the command is an operation of an executeBatch call
+	@Nullable
+	public final GattBatch.Op batchOp;
+	// the characteristic or descriptor whose GATT callback completes the command, set when
+	// the command starts the operation
+	@Nullable
+	public volatile Object target;
+	// uptime in ms, for the wait and service time statistics
+	public final long enqueuedAt = SystemClock.uptimeMillis();
+	public long startedAt;
+
+	public GattCommand(Type type, Priority priority, Runnable action, @Nullable String tag,
+					   @Nullable Callback callback, @Nullable GattBatch.Op batchOp) {
+		this.type = type;
+		this.priority = priority;
+		this.action = action;
+		this.tag = tag;
+		this.callback = callback;
+		this.batchOp = batchOp;
+	}
+}
@@ -0,0 +1,79 @@
+package it.innove;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Command queue of a peripheral with one FIFO lane per priority.
+ * Higher lanes go first, but a waiting lane that was passed over MAX_SKIPS times
+ * is served next so housekeeping commands still make progress under load.
+ */
+public class GattCommandQueue {
+
+	static final int MAX_SKIPS = 8;
+
+	private final GattCommand.Priority[] priorities = GattCommand.Priority.values();
+	private final Queue<GattCommand>[] lanes;
+	private final int[] skips;
+
+	@SuppressWarnings("unchecked")
+	public GattCommandQueue() {
+		lanes = new Queue[priorities.length];
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i] = new ConcurrentLinkedQueue<>();
+		}
+		skips = new int[priorities.length];
+	}
+
+	public boolean add(GattCommand command) {
+		return lanes[command.priority.ordinal()].add(command);
+	}
+
+	// Not thread safe, callers serialize polling
+	public GattCommand poll() {
+		for (int i = lanes.length - 1; i > 0; i--) {
+			if (skips[i] >= MAX_SKIPS && !lanes[i].isEmpty()) {
+				return take(i);
+			}
+		}
+		for (int i = 0; i < lanes.length; i++) {
+			if (!lanes[i].isEmpty()) {
+				return take(i);
+			}
+		}
+		return null;
+	}
+
+	private GattCommand take(int lane) {
+		GattCommand command = lanes[lane].poll();
+		skips[lane] = 0;
+		for (int i = 0; i < lanes.length; i++) {
+			if (i != lane && !lanes[i].isEmpty()) {
+				skips[i]++;
+			}
+		}
+		return command;
+	}
+
+	// Not thread safe, callers serialize removing with polling
+	public List<GattCommand> removeTagged(String tag) {
+		List<GattCommand> removed = new ArrayList<>();
+		for (Queue<GattCommand> lane : lanes) {
+			for (Iterator<GattCommand> iterator = lane.iterator(); iterator.hasNext(); ) {
+				GattCommand command = iterator.next();
+				if (tag.equals(command.tag)) {
+					iterator.remove();
+					removed.add(command);
+				}
+			}
+		}
+		return removed;
+	}
+
+	public int size(GattCommand.Priority priority) {
+		return lanes[priority.ordinal()].size();
+	}
+}
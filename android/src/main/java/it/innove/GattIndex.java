@@ -0,0 +1,102 @@
+package it.innove;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Characteristic lookup table of a peripheral, built once for each service discovery.
+ * Lookups give the same characteristic the linear find*Characteristic searches of
+ * Peripheral would, and every characteristic gets an integer handle JS can use
+ * instead of the service and characteristic UUIDs.
+ */
+public class GattIndex {
+
+	public static final int READ = 0;
+	public static final int WRITE = 1;
+	public static final int WRITE_NO_RESPONSE = 2;
+	public static final int NOTIFY = 3;
+	private static final int INDICATE = 4;
+	private static final int ANY = 5;
+
+	private static final int[] PROPERTIES = {
+			BluetoothGattCharacteristic.PROPERTY_READ,
+			BluetoothGattCharacteristic.PROPERTY_WRITE,
+			BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE,
+			BluetoothGattCharacteristic.PROPERTY_NOTIFY,
+			BluetoothGattCharacteristic.PROPERTY_INDICATE
+	};
+
+	private final Map<UUID, Map<UUID, BluetoothGattCharacteristic[]>> lookup = new HashMap<>();
+	private final List<BluetoothGattCharacteristic> handles = new ArrayList<>();
+	private final Map<BluetoothGattCharacteristic, Integer> handleOf = new IdentityHashMap<>();
+
+	public GattIndex(List<BluetoothGattService> services) {
+		for (BluetoothGattService service : services) {
+			// like gatt.getService(), the first service with a UUID wins
+			boolean indexed = !lookup.containsKey(service.getUuid());
+			Map<UUID, BluetoothGattCharacteristic[]> characteristics = null;
+			if (indexed) {
+				characteristics = new HashMap<>();
+				lookup.put(service.getUuid(), characteristics);
+			}
+
+			for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+				handleOf.put(characteristic, handles.size());
+				handles.add(characteristic);
+				if (!indexed) {
+					continue;
+				}
+
+				BluetoothGattCharacteristic[] slots = characteristics.get(characteristic.getUuid());
+				if (slots == null) {
+					slots = new BluetoothGattCharacteristic[ANY + 1];
+					characteristics.put(characteristic.getUuid(), slots);
+				}
+				for (int kind = 0; kind < PROPERTIES.length; kind++) {
+					if (slots[kind] == null && (characteristic.getProperties() & PROPERTIES[kind]) != 0) {
+						slots[kind] = characteristic;
+					}
+				}
+				if (slots[ANY] == null) {
+					slots[ANY] = characteristic;
+				}
+			}
+		}
+	}
+
+	// The characteristic to use for an operation of this kind, null if there is none
+	public BluetoothGattCharacteristic find(UUID serviceUUID, UUID characteristicUUID, int kind) {
+		Map<UUID, BluetoothGattCharacteristic[]> characteristics = lookup.get(serviceUUID);
+		if (characteristics == null) {
+			return null;
+		}
+		BluetoothGattCharacteristic[] slots = characteristics.get(characteristicUUID);
+		if (slots == null) {
+			return null;
+		}
+		if (slots[kind] != null) {
+			return slots[kind];
+		}
+		// notify falls back to indicate, then everything to any characteristic with the UUID
+		if (kind == NOTIFY && slots[INDICATE] != null) {
+			return slots[INDICATE];
+		}
+		return slots[ANY];
+	}
+
+	public BluetoothGattCharacteristic get(int handle) {
+		return handle >= 0 && handle < handles.size() ? handles.get(handle) : null;
+	}
+
+	public int handleOf(BluetoothGattCharacteristic characteristic) {
+		Integer handle = handleOf.get(characteristic);
+		return handle != null ? handle : -1;
+	}
+}
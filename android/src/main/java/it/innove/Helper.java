@@ -7,45 +7,83 @@ import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import org.json.JSONArray;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class Helper {
 
+	// Characteristics share a handful of property and permission combinations,
+	// the names are decoded once for each bitmask
+	private static final Map<Integer, String[]> propertyNames = new ConcurrentHashMap<>();
+	private static final Map<Integer, String[]> permissionNames = new ConcurrentHashMap<>();
+
 	public static WritableArray decodeProperties(BluetoothGattCharacteristic characteristic) {
+		WritableArray props = Arguments.createArray();
+		for (String name : propertyNames(characteristic.getProperties())) {
+			props.pushString(name);
+		}
+		return props;
+	}
+
+	public static WritableMap decodePermissions(BluetoothGattCharacteristic characteristic) {
+		return permissionsMap(characteristic.getPermissions());
+	}
+
+	public static WritableMap decodePermissions(BluetoothGattDescriptor descriptor) {
+		// descriptor permissions use the same bits as the characteristic ones
+		return permissionsMap(descriptor.getPermissions());
+	}
+
+	private static WritableMap permissionsMap(int permissions) {
+		WritableMap props = Arguments.createMap();
+		for (String name : permissionNames(permissions)) {
+			props.putString(name, name);
+		}
+		return props;
+	}
+
+	static String[] propertyNames(int properties) {
+		String[] names = propertyNames.get(properties);
+		if (names != null) {
+			return names;
+		}
 
 		// NOTE: props strings need to be consistent across iOS and Android
-		WritableArray props = Arguments.createArray();
-		int properties = characteristic.getProperties();
+		List<String> props = new ArrayList<>();
 
 		if ((properties & BluetoothGattCharacteristic.PROPERTY_BROADCAST) != 0x0 ) {
-			props.pushString( "Broadcast");
+			props.add( "Broadcast");
 		}
 
 		if ((properties & BluetoothGattCharacteristic.PROPERTY_READ) != 0x0 ) {
-			props.pushString( "Read");
+			props.add( "Read");
 		}
 
 		if ((properties & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0x0 ) {
-			props.pushString( "WriteWithoutResponse");
+			props.add( "WriteWithoutResponse");
 		}
 
 		if ((properties & BluetoothGattCharacteristic.PROPERTY_WRITE) != 0x0 ) {
-			props.pushString("Write");
+			props.add("Write");
 		}
 
 		if ((properties & BluetoothGattCharacteristic.PROPERTY_NOTIFY) != 0x0 ) {
-			props.pushString( "Notify");
+			props.add( "Notify");
 		}
 
 		if ((properties & BluetoothGattCharacteristic.PROPERTY_INDICATE) != 0x0 ) {
-			props.pushString( "Indicate");
+			props.add( "Indicate");
 		}
 
 		if ((properties & BluetoothGattCharacteristic.PROPERTY_SIGNED_WRITE) != 0x0 ) {
 			// Android calls this "write with signature", using iOS name for now
-			props.pushString( "AuthenticateSignedWrites");
+			props.add( "AuthenticateSignedWrites");
 		}
 
 		if ((properties & BluetoothGattCharacteristic.PROPERTY_EXTENDED_PROPS) != 0x0 ) {
-			props.pushString("ExtendedProperties");
+			props.add("ExtendedProperties");
 		}
 
 //      iOS only?
@@ -58,89 +96,55 @@ public class Helper {
 //                [props addObject:@"IndicateEncryptionRequired"];
 //            }
 
-		return props;
+		names = props.toArray(new String[0]);
+		propertyNames.put(properties, names);
+		return names;
 	}
 
-	public static WritableMap decodePermissions(BluetoothGattCharacteristic characteristic) {
+	static String[] permissionNames(int permissions) {
+		String[] names = permissionNames.get(permissions);
+		if (names != null) {
+			return names;
+		}
 
 		// NOTE: props strings need to be consistent across iOS and Android
-		WritableMap props = Arguments.createMap();
-		int permissions = characteristic.getPermissions();
+		List<String> props = new ArrayList<>();
 
 		if ((permissions & BluetoothGattCharacteristic.PERMISSION_READ) != 0x0 ) {
-			props.putString("Read", "Read");
+			props.add("Read");
 		}
 
 		if ((permissions & BluetoothGattCharacteristic.PERMISSION_WRITE) != 0x0 ) {
-			props.putString("Write", "Write");
+			props.add("Write");
 		}
 
 		if ((permissions & BluetoothGattCharacteristic.PERMISSION_READ_ENCRYPTED) != 0x0 ) {
-			props.putString("ReadEncrypted", "ReadEncrypted");
+			props.add("ReadEncrypted");
 		}
 
 		if ((permissions & BluetoothGattCharacteristic.PERMISSION_WRITE_ENCRYPTED) != 0x0 ) {
-			props.putString("WriteEncrypted", "WriteEncrypted");
+			props.add("WriteEncrypted");
 		}
 
 		if ((permissions & BluetoothGattCharacteristic.PERMISSION_READ_ENCRYPTED_MITM) != 0x0 ) {
-			props.putString("ReadEncryptedMITM", "ReadEncryptedMITM");
+			props.add("ReadEncryptedMITM");
 		}
 
 		if ((permissions & BluetoothGattCharacteristic.PERMISSION_WRITE_ENCRYPTED_MITM) != 0x0 ) {
-			props.putString("WriteEncryptedMITM", "WriteEncryptedMITM");
+			props.add("WriteEncryptedMITM");
 		}
 
 		if ((permissions & BluetoothGattCharacteristic.PERMISSION_WRITE_SIGNED) != 0x0 ) {
-			props.putString("WriteSigned", "WriteSigned");
+			props.add("WriteSigned");
 		}
 
 		if ((permissions & BluetoothGattCharacteristic.PERMISSION_WRITE_SIGNED_MITM) != 0x0 ) {
-			props.putString("WriteSignedMITM", "WriteSignedMITM");
+			props.add("WriteSignedMITM");
 		}
 
-		return props;
-	}
-
-	public static WritableMap decodePermissions(BluetoothGattDescriptor descriptor) {
-
-		// NOTE: props strings need to be consistent across iOS and Android
-		WritableMap props = Arguments.createMap();
-		int permissions = descriptor.getPermissions();
-
-		if ((permissions & BluetoothGattDescriptor.PERMISSION_READ) != 0x0 ) {
-			props.putString("Read", "Read");
-		}
-
-		if ((permissions & BluetoothGattDescriptor.PERMISSION_WRITE) != 0x0 ) {
-			props.putString("Write", "Write");
-		}
-
-		if ((permissions & BluetoothGattDescriptor.PERMISSION_READ_ENCRYPTED) != 0x0 ) {
-			props.putString("ReadEncrypted", "ReadEncrypted");
-		}
-
-		if ((permissions & BluetoothGattDescriptor.PERMISSION_WRITE_ENCRYPTED) != 0x0 ) {
-			props.putString("WriteEncrypted", "WriteEncrypted");
-		}
-
-		if ((permissions & BluetoothGattDescriptor.PERMISSION_READ_ENCRYPTED_MITM) != 0x0 ) {
-			props.putString("ReadEncryptedMITM", "ReadEncryptedMITM");
-		}
-
-		if ((permissions & BluetoothGattDescriptor.PERMISSION_WRITE_ENCRYPTED_MITM) != 0x0 ) {
-			props.putString("WriteEncryptedMITM", "WriteEncryptedMITM");
-		}
-
-		if ((permissions & BluetoothGattDescriptor.PERMISSION_WRITE_SIGNED) != 0x0 ) {
-			props.putString("WriteSigned", "WriteSigned");
-		}
-
-		if ((permissions & BluetoothGattDescriptor.PERMISSION_WRITE_SIGNED_MITM) != 0x0 ) {
-			props.putString("WriteSignedMITM", "WriteSignedMITM");
-		}
-
-		return props;
+		names = props.toArray(new String[0]);
+		permissionNames.put(permissions, names);
+		return names;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package it.innove;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Histogram of durations in milliseconds with power of two buckets: bucket i counts the
+ * durations up to 2^i ms, the last one everything above. Percentiles are reported as the
+ * upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+	static final int BUCKETS = 16;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long sum = 0;
+	private long max = 0;
+
+	public synchronized void record(long millis) {
+		if (millis < 0) {
+			millis = 0;
+		}
+		int bucket = millis <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(millis - 1);
+		counts[Math.min(bucket, BUCKETS - 1)]++;
+		count++;
+		sum += millis;
+		if (millis > max) {
+			max = millis;
+		}
+	}
+
+	private long percentile(double fraction) {
+		long rank = (long) Math.ceil(count * fraction);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS - 1; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(1L << i, max);
+			}
+		}
+		return max;
+	}
+
+	public synchronized WritableMap toWritableMap() {
+		WritableMap map = Arguments.createMap();
+		map.putDouble("count", count);
+		map.putDouble("mean", count == 0 ? 0 : (double) sum / count);
+		map.putDouble("max", max);
+		map.putDouble("p50", percentile(0.5));
+		map.putDouble("p90", percentile(0.9));
+		map.putDouble("p99", percentile(0.99));
+		WritableArray buckets = Arguments.createArray();
+		for (long bucketCount : counts) {
+			buckets.pushDouble(bucketCount);
+		}
+		map.putArray("buckets", buckets);
+		return map;
+	}
+}
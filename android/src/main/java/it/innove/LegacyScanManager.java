@@ -28,14 +28,14 @@ public class LegacyScanManager extends ScanManager {
 				@Override
 				public void onLeScan(final BluetoothDevice device, final int rssi,
 									 final byte[] scanRecord) {
-					runOnUiThread(new Runnable() {
+					bleManager.getGattHandler(device.getAddress()).post(new Runnable() {
 						@Override
 						public void run() {
 							Log.i(bleManager.LOG_TAG, "DiscoverPeripheral: " + device.getName());
 
                             Peripheral peripheral = bleManager.getPeripheral(device);
                             if (peripheral == null) {
-                            	peripheral = new Peripheral(device, rssi, scanRecord, bleManager.getReactContext());
+                            	peripheral = new Peripheral(device, rssi, scanRecord, bleManager);
 							} else {
                             	peripheral.updateData(scanRecord);
                             	peripheral.updateRssi(rssi);
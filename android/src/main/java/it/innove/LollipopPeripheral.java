@@ -11,8 +11,6 @@ import android.util.SparseArray;
 import androidx.annotation.RequiresApi;
 
 import com.facebook.react.bridge.Arguments;
-import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
@@ -24,14 +22,14 @@ public class LollipopPeripheral extends Peripheral {
 	private ScanRecord advertisingData;
 	private ScanResult scanResult;
 
-	public LollipopPeripheral(ReactContext reactContext, ScanResult result) {
-		super(result.getDevice(), result.getRssi(), result.getScanRecord().getBytes(), reactContext);
+	public LollipopPeripheral(BleManager bleManager, ScanResult result) {
+		super(result.getDevice(), result.getRssi(), result.getScanRecord().getBytes(), bleManager);
 		this.advertisingData = result.getScanRecord();
 		this.scanResult = result;
 	}
 
-	public LollipopPeripheral(BluetoothDevice device, ReactApplicationContext reactContext) {
-		super(device, reactContext);
+	public LollipopPeripheral(BluetoothDevice device, BleManager bleManager) {
+		super(device, bleManager);
 	}
 
 	@Override
@@ -119,14 +119,14 @@ public class LollipopScanManager extends ScanManager {
 		@Override
 		public void onScanResult(final int callbackType, final ScanResult result) {
 
-			runOnUiThread(new Runnable() {
+			bleManager.getGattHandler(result.getDevice().getAddress()).post(new Runnable() {
 				@Override
 				public void run() {
 					Log.i(bleManager.LOG_TAG, "DiscoverPeripheral: " + result.getDevice().getName());
 
                     LollipopPeripheral peripheral = (LollipopPeripheral) bleManager.getPeripheral(result.getDevice());
                     if (peripheral == null) {
-                        peripheral = new LollipopPeripheral(bleManager.getReactContext(), result);
+                        peripheral = new LollipopPeripheral(bleManager, result);
                     } else {
                         peripheral.updateData(result);
                         peripheral.updateRssi(result.getRssi());
@@ -0,0 +1,69 @@
+package it.innove;
+
+import android.os.Handler;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Collects the characteristic notifications of every peripheral and emits them to JS
+ * as a single BleManagerDidUpdateValueForCharacteristicBatch event, once per interval
+ * or as soon as maxSize notifications are pending.
+ */
+public class NotificationBatcher {
+
+	public static final String BATCH_EVENT = "BleManagerDidUpdateValueForCharacteristicBatch";
+
+	private final BleManager bleManager;
+	private final int interval;
+	private final int maxSize;
+	private final Handler handler;
+	private final Runnable flushRunnable = this::flush;
+
+	private WritableArray values;
+	private int count = 0;
+
+	public NotificationBatcher(BleManager bleManager, Handler handler, int interval, int maxSize) {
+		this.bleManager = bleManager;
+		this.handler = handler;
+		this.interval = interval;
+		this.maxSize = maxSize;
+	}
+
+	public synchronized void add(WritableMap notification) {
+		if (values == null) {
+			values = Arguments.createArray();
+			handler.postDelayed(flushRunnable, interval);
+		}
+		values.pushMap(notification);
+		count++;
+
+		if (maxSize > 0 && count >= maxSize) {
+			flush();
+		}
+	}
+
+	public synchronized void flush() {
+		handler.removeCallbacks(flushRunnable);
+		if (values == null) {
+			return;
+		}
+
+		// emit while holding the lock so batches flushed by the timer and by the
+		// size limit can't overtake each other
+		WritableMap map = Arguments.createMap();
+		map.putArray("values", values);
+		Log.d(BleManager.LOG_TAG, "Emitting batch of " + count + " notifications");
+		values = null;
+		count = 0;
+		bleManager.sendEvent(BATCH_EVENT, map);
+	}
+
+	public synchronized void stop() {
+		handler.removeCallbacks(flushRunnable);
+		values = null;
+		count = 0;
+	}
+}
@@ -0,0 +1,87 @@
+package it.innove;
+
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded queue of notification events waiting to be emitted to JS for one subscription.
+ * When the queue is full the policy decides which value is dropped, drops are counted.
+ */
+public class NotificationQueue {
+
+	public enum Policy {
+		DROP_OLDEST("dropOldest"),
+		DROP_NEWEST("dropNewest"),
+		KEEP_LATEST("keepLatest");
+
+		private final String value;
+
+		Policy(String value) {
+			this.value = value;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public static Policy fromString(String value) {
+			for (Policy policy : values()) {
+				if (policy.value.equals(value)) {
+					return policy;
+				}
+			}
+			return DROP_OLDEST;
+		}
+	}
+
+	public final String serviceUUID;
+	public final String characteristicUUID;
+	public final Policy policy;
+	public final int capacity;
+	private final ArrayDeque<WritableMap> items;
+	private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+	private long dropped = 0;
+
+	public NotificationQueue(String serviceUUID, String characteristicUUID, int capacity, Policy policy) {
+		this.serviceUUID = serviceUUID;
+		this.characteristicUUID = characteristicUUID;
+		this.policy = policy;
+		// keepLatest conflates the values, only the most recent one is worth emitting
+		this.capacity = policy == Policy.KEEP_LATEST ? 1 : Math.max(capacity, 1);
+		this.items = new ArrayDeque<>(this.capacity);
+	}
+
+	public synchronized void offer(WritableMap value) {
+		if (items.size() >= capacity) {
+			dropped++;
+			if (policy == Policy.DROP_NEWEST) {
+				return;
+			}
+			items.pollFirst();
+		}
+		items.addLast(value);
+	}
+
+	public synchronized WritableMap poll() {
+		return items.pollFirst();
+	}
+
+	public synchronized int size() {
+		return items.size();
+	}
+
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	// returns true if the caller has to schedule a drain
+	public boolean scheduleDrain() {
+		return drainScheduled.compareAndSet(false, true);
+	}
+
+	public void drainStarted() {
+		drainScheduled.set(false);
+	}
+}
@@ -1,35 +1,62 @@
 package it.innove;
 
-import java.nio.ByteBuffer;
-
+/**
+ * Reusable buffer for notification values. Storage is allocated once and reused after every
+ * flush; packets are never split, a packet that does not fit is left for the next batch.
+ * Callers are expected to synchronize on the container.
+ */
 public class NotifyBufferContainer {
-    public final Integer maxBufferSize;
-    private Integer bufferCount;
-    public ByteBuffer items;
+    public final String serviceUUID;
+    public final String characteristicUUID;
+    public final int maxBufferSize;
+    public final int maxLatency;
+    private final byte[] items;
+    private int bufferCount = 0;
+    private Runnable flushTask;
 
-    public NotifyBufferContainer(Integer size) {
+    public NotifyBufferContainer(String serviceUUID, String characteristicUUID, int size, int maxLatency) {
+        this.serviceUUID = serviceUUID;
+        this.characteristicUUID = characteristicUUID;
         this.maxBufferSize = size;
-        this.resetBuffer();
+        this.maxLatency = maxLatency;
+        this.items = new byte[size];
     }
-    public void resetBuffer(){
+
+    public void resetBuffer() {
         this.bufferCount = 0;
-        this.items = ByteBuffer.allocate(this.maxBufferSize);
     }
-    public void put(byte[] value){
+
+    public boolean fits(byte[] value) {
+        return this.bufferCount + value.length <= this.maxBufferSize;
+    }
+
+    public void put(byte[] value) {
+        System.arraycopy(value, 0, this.items, this.bufferCount, value.length);
         this.bufferCount += value.length;
-        if (this.items.remaining() < value.length) {
-            return;
-        }
-        this.items.put(value);
     }
-    public boolean isBufferFull(){
+
+    public boolean isBufferFull() {
         return this.bufferCount >= this.maxBufferSize;
     }
-    public Integer size() {
+
+    public boolean isEmpty() {
+        return this.bufferCount == 0;
+    }
+
+    public int size() {
         return this.bufferCount;
     }
-    @Override 
-    protected void finalize() throws Throwable {
-        this.items = ByteBuffer.allocate(0);
+
+    // backing storage, only the first size() bytes are valid
+    public byte[] array() {
+        return this.items;
+    }
+
+    public Runnable getFlushTask() {
+        return flushTask;
+    }
+
+    public void setFlushTask(Runnable flushTask) {
+        this.flushTask = flushTask;
     }
 }
@@ -10,10 +10,11 @@ import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
 import android.bluetooth.BluetoothProfile;
+import android.bluetooth.BluetoothStatusCodes;
 import android.content.Context;
 import android.os.Build;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.SystemClock;
 import androidx.annotation.Nullable;
 import android.util.Base64;
 import android.util.Log;
@@ -21,22 +22,24 @@ import android.util.Log;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Callback;
 import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.RCTNativeAppEventEmitter;
 
 import org.json.JSONException;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
-import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
 
 import static android.os.Build.VERSION_CODES.LOLLIPOP;
 import static com.facebook.react.common.ReactConstants.TAG;
@@ -58,11 +61,14 @@ public class Peripheral extends BluetoothGattCallback {
 
 	private final BluetoothDevice device;
 	private final Map<String, NotifyBufferContainer> bufferedCharacteristics;
+	private final Set<String> base64Characteristics = ConcurrentHashMap.newKeySet();
+	private final Map<String, NotificationQueue> notificationQueues = new ConcurrentHashMap<>();
 	protected volatile byte[] advertisingDataBytes = new byte[0];
 	protected volatile int advertisingRSSI;
 	private volatile boolean connected = false;
 	private volatile boolean connecting = false;
 	private ReactContext reactContext;
+	private BleManager bleManager;
 	private BluetoothAdapter bluetoothAdapter;
 
 	private BluetoothGatt gatt;
@@ -70,39 +76,91 @@ public class Peripheral extends BluetoothGattCallback {
 	private Callback connectCallback;
 	private Callback retrieveServicesCallback;
 	private Callback readCallback;
+	// read cache version of the characteristic when the running read was requested
+	private long readCacheVersion;
+	// reads waiting in the queue by characteristic, a new read of the same one joins them
+	private final Map<String, CoalescedRead> pendingReads = new HashMap<>();
+	private long coalescedReads = 0;
+	private final ReadCache readCache = new ReadCache();
+	// rebuilt by every service discovery, the handles of retrieveServices index into it
+	private volatile GattIndex gattIndex;
+	private volatile ServicesSnapshot servicesSnapshot;
+	private Set<UUID> retrieveServicesFilter;
+	// persisted layout retrieveServices answered with, checked by the discovery running behind it
+	private byte[] cachedGattLayout;
 	private Callback readRSSICallback;
 	private Callback writeCallback;
 	private Callback registerNotifyCallback;
 	private Callback requestMTUCallback;
-
-	private final Queue<Runnable> commandQueue = new ConcurrentLinkedQueue<>();
-	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private Callback phyCallback;
+
+	// the connection as last reported by the stack, the parameters are -1 until reported
+	private static final int DEFAULT_MTU = 23;
+	// longest attribute value, a prepared value up to it may span several Prepare Write requests
+	private static final int MAX_ATTRIBUTE_LENGTH = 512;
+	private volatile int mtu = DEFAULT_MTU;
+	private volatile int txPhy = BluetoothDevice.PHY_LE_1M;
+	private volatile int rxPhy = BluetoothDevice.PHY_LE_1M;
+	private volatile int connectionInterval = -1;
+	private volatile int connectionLatency = -1;
+	private volatile int supervisionTimeout = -1;
+
+	private final GattCommandQueue commandQueue = new GattCommandQueue();
+	private final Handler handler;
 	private boolean commandQueueBusy = false;
-
-	private List<byte[]> writeQueue = new ArrayList<>();
-
-	public Peripheral(BluetoothDevice device, int advertisingRSSI, byte[] scanRecord, ReactContext reactContext) {
+	private GattCommand currentCommand;
+	private Runnable commandTimeoutTask;
+	private final int[] commandTimeoutCounts = new int[GattCommand.Type.values().length];
+	private final AtomicIntegerArray queuedCommandCounts = new AtomicIntegerArray(GattCommand.Type.values().length);
+	private final LatencyHistogram[] commandWaitTimes = createHistograms();
+	private final LatencyHistogram[] commandServiceTimes = createHistograms();
+
+	// payload of the running write and the offset of its next chunk, which goes when the stack
+	// reports the previous one with onCharacteristicWrite. Chunks are copied to writeStaging,
+	// reused from write to write, so the allocations don't grow with the number of chunks.
+	private byte[] writeData;
+	private int writeOffset;
+	private int writeChunkSize;
+	private byte[] writeStaging;
+	private BluetoothGattCharacteristic writeCharacteristic;
+	// values of the running reliable write, the next one is prepared when the previous one is
+	// acknowledged and they are executed together after the last one
+	private BluetoothGattCharacteristic[] reliableWriteCharacteristics;
+	private byte[][] reliableWriteValues;
+	private int reliableWriteIndex;
+	private boolean reliableWriteExecuting = false;
+	private Callback reliableWriteCallback;
+	private int writeBusyRetries = 0;
+	private static final int WRITE_BUSY_RETRY_DELAY = 2;
+	private static final int MAX_WRITE_BUSY_RETRIES = 250;
+	// not every controller reports a PHY update when the PHYs in use don't change, setPreferredPhy
+	// then answers with them after this delay instead of holding the queue
+	private static final long PHY_UPDATE_TIMEOUT = 5000;
+
+	public Peripheral(BluetoothDevice device, int advertisingRSSI, byte[] scanRecord, BleManager bleManager) {
 		this.device = device;
 		this.bufferedCharacteristics = new ConcurrentHashMap<String, NotifyBufferContainer>();
 		this.advertisingRSSI = advertisingRSSI;
 		this.advertisingDataBytes = scanRecord;
-		this.reactContext = reactContext;
+		this.bleManager = bleManager;
+		this.reactContext = bleManager.getReactContext();
+		this.handler = bleManager.getGattHandler(device.getAddress());
 		BluetoothManager manager = (BluetoothManager) reactContext.getSystemService(Context.BLUETOOTH_SERVICE);
 		this.bluetoothAdapter = manager.getAdapter();
 	}
 
-	public Peripheral(BluetoothDevice device, ReactContext reactContext) {
+	public Peripheral(BluetoothDevice device, BleManager bleManager) {
 		this.device = device;
 		this.bufferedCharacteristics = new ConcurrentHashMap<String, NotifyBufferContainer>();
-		this.reactContext = reactContext;
+		this.bleManager = bleManager;
+		this.reactContext = bleManager.getReactContext();
+		this.handler = bleManager.getGattHandler(device.getAddress());
 		BluetoothManager manager = (BluetoothManager) reactContext.getSystemService(Context.BLUETOOTH_SERVICE);
 		this.bluetoothAdapter = manager.getAdapter();
 	}
 
 	private void sendEvent(String eventName, @Nullable WritableMap params) {
-		synchronized (reactContext) {
-			reactContext.getJSModule(RCTNativeAppEventEmitter.class).emit(eventName, params);
-		}
+		bleManager.sendEvent(eventName, params);
 	}
 
 	private void sendConnectionEvent(BluetoothDevice device, String eventName, int status) {
@@ -116,7 +174,7 @@ public class Peripheral extends BluetoothGattCallback {
 	}
 
 	public void connect(final Callback callback, Activity activity) {
-		if (!enqueue(() -> {
+		if (!enqueue(GattCommand.Type.CONNECT, () -> {
 			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
 				completedCommand();
 				return;
@@ -161,8 +219,14 @@ public class Peripheral extends BluetoothGattCallback {
 	}
 	// bt_btif : Register with GATT stack failed.
 
+	// Connects and runs the MTU, PHY, connection priority, discovery and subscription stages of the
+	// profile with one callback, see ConnectionProfile
+	public void connectWithProfile(ReadableMap profile, Activity activity, Callback callback) {
+		new ConnectionProfile(this, profile, callback).start(activity);
+	}
+
 	public void disconnect(final Callback callback, final boolean force) {
-		mainHandler.post(() -> {
+		handler.post(() -> {
 			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) return;
 
 			// gatt is already null
@@ -210,58 +274,20 @@ public class Peripheral extends BluetoothGattCallback {
 	}
 
 	public WritableMap asWritableMap(BluetoothGatt gatt) {
+		return asWritableMap(gatt, null);
+	}
 
-		WritableMap map = asWritableMap();
+	public WritableMap asWritableMap(BluetoothGatt gatt, @Nullable Set<UUID> serviceFilter) {
 
-		WritableArray servicesArray = Arguments.createArray();
-		WritableArray characteristicsArray = Arguments.createArray();
+		WritableMap map = asWritableMap();
 
 		if (connected && gatt != null) {
-			for (Iterator<BluetoothGattService> it = gatt.getServices().iterator(); it.hasNext();) {
-				BluetoothGattService service = it.next();
-				WritableMap serviceMap = Arguments.createMap();
-				serviceMap.putString("uuid", UUIDHelper.uuidToString(service.getUuid()));
-
-				for (Iterator<BluetoothGattCharacteristic> itCharacteristic = service.getCharacteristics()
-						.iterator(); itCharacteristic.hasNext();) {
-					BluetoothGattCharacteristic characteristic = itCharacteristic.next();
-					WritableMap characteristicsMap = Arguments.createMap();
-
-					characteristicsMap.putString("service", UUIDHelper.uuidToString(service.getUuid()));
-					characteristicsMap.putString("characteristic", UUIDHelper.uuidToString(characteristic.getUuid()));
-
-					characteristicsMap.putArray("properties", Helper.decodeProperties(characteristic));
-
-					if (characteristic.getPermissions() > 0) {
-						characteristicsMap.putMap("permissions", Helper.decodePermissions(characteristic));
-					}
-
-					WritableArray descriptorsArray = Arguments.createArray();
-
-					for (BluetoothGattDescriptor descriptor : characteristic.getDescriptors()) {
-						WritableMap descriptorMap = Arguments.createMap();
-						descriptorMap.putString("uuid", UUIDHelper.uuidToString(descriptor.getUuid()));
-						if (descriptor.getValue() != null) {
-							descriptorMap.putString("value",
-									Base64.encodeToString(descriptor.getValue(), Base64.NO_WRAP));
-						} else {
-							descriptorMap.putString("value", null);
-						}
-
-						if (descriptor.getPermissions() > 0) {
-							descriptorMap.putMap("permissions", Helper.decodePermissions(descriptor));
-						}
-						descriptorsArray.pushMap(descriptorMap);
-					}
-					if (descriptorsArray.size() > 0) {
-						characteristicsMap.putArray("descriptors", descriptorsArray);
-					}
-					characteristicsArray.pushMap(characteristicsMap);
-				}
-				servicesArray.pushMap(serviceMap);
+			// only a successful discovery stores the snapshot, anything else is built for this call
+			ServicesSnapshot snapshot = servicesSnapshot;
+			if (snapshot == null) {
+				snapshot = new ServicesSnapshot(gatt.getServices(), gattIndex);
 			}
-			map.putArray("services", servicesArray);
-			map.putArray("characteristics", characteristicsArray);
+			snapshot.writeTo(map, serviceFilter);
 		}
 
 		return map;
@@ -287,22 +313,74 @@ public class Peripheral extends BluetoothGattCallback {
 		return device;
 	}
 
+	public WritableMap getStats() {
+		WritableMap map = Arguments.createMap();
+		map.putString("peripheral", device.getAddress());
+
+		WritableArray notifications = Arguments.createArray();
+		for (NotificationQueue queue : this.notificationQueues.values()) {
+			WritableMap queueMap = Arguments.createMap();
+			queueMap.putString("service", UUIDHelper.uuidToString(UUID.fromString(queue.serviceUUID)));
+			queueMap.putString("characteristic", UUIDHelper.uuidToString(UUID.fromString(queue.characteristicUUID)));
+			queueMap.putString("queuePolicy", queue.policy.getValue());
+			queueMap.putInt("queueSize", queue.capacity);
+			queueMap.putInt("queued", queue.size());
+			queueMap.putDouble("dropped", queue.getDropped());
+			notifications.pushMap(queueMap);
+		}
+		map.putArray("notifications", notifications);
+
+		WritableMap timeouts = Arguments.createMap();
+		WritableMap operations = Arguments.createMap();
+		for (GattCommand.Type type : GattCommand.Type.values()) {
+			timeouts.putInt(type.getValue(), commandTimeoutCounts[type.ordinal()]);
+
+			WritableMap operation = Arguments.createMap();
+			operation.putInt("queued", queuedCommandCounts.get(type.ordinal()));
+			operation.putMap("waitTime", commandWaitTimes[type.ordinal()].toWritableMap());
+			operation.putMap("serviceTime", commandServiceTimes[type.ordinal()].toWritableMap());
+			operations.putMap(type.getValue(), operation);
+		}
+		map.putMap("timeouts", timeouts);
+		map.putMap("operations", operations);
+		synchronized (pendingReads) {
+			map.putDouble("coalescedReads", coalescedReads);
+		}
+		map.putDouble("cacheHits", readCache.getHits());
+		map.putDouble("cacheMisses", readCache.getMisses());
+
+		WritableMap queued = Arguments.createMap();
+		for (GattCommand.Priority priority : GattCommand.Priority.values()) {
+			queued.putInt(priority.getValue(), commandQueue.size(priority));
+		}
+		map.putMap("queued", queued);
+		return map;
+	}
+
+	private static LatencyHistogram[] createHistograms() {
+		LatencyHistogram[] histograms = new LatencyHistogram[GattCommand.Type.values().length];
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+		return histograms;
+	}
+
 	public void handleExternalDisconnect() {
-		mainHandler.post(() -> {
+		handler.post(() -> {
 			handleDisconnect();
 		});
 	}
 	
-	private void handleDisconnect() {
-
+	// fails the callback of the running command, returns true if there was one
+	private boolean failPendingCallbacks(InvalidStateCode code) {
 		boolean canceledCommand = false;
 
 		List<Callback> callbacks = Arrays.asList(connectCallback, writeCallback, retrieveServicesCallback, readRSSICallback,
-				readCallback, registerNotifyCallback, requestMTUCallback);
+				readCallback, registerNotifyCallback, requestMTUCallback, phyCallback, reliableWriteCallback);
 		for (Callback currentCallback : callbacks) {
 			if (currentCallback != null) {
 				try {
-					currentCallback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_DISCONNECTED));
+					currentCallback.invoke(createInvalidStateErrorWritableMap(code));
 				} catch (Exception e) {
 					e.printStackTrace();
 				} finally {
@@ -317,10 +395,32 @@ public class Peripheral extends BluetoothGattCallback {
 		readRSSICallback = null;
 		registerNotifyCallback = null;
 		requestMTUCallback = null;
+		phyCallback = null;
+		reliableWriteCallback = null;
+		reliableWriteCharacteristics = null;
+		reliableWriteValues = null;
+		reliableWriteExecuting = false;
 		connectCallback = null;
 
-		writeQueue.clear();
-		clearBuffers();
+		writeData = null;
+		return canceledCommand;
+	}
+
+	private void handleDisconnect() {
+
+		boolean canceledCommand = failPendingCallbacks(InvalidStateCode.PERIPHERAL_DISCONNECTED);
+
+		flushBuffers();
+		readCache.clear();
+		gattIndex = null;
+		servicesSnapshot = null;
+		cachedGattLayout = null;
+		mtu = DEFAULT_MTU;
+		txPhy = BluetoothDevice.PHY_LE_1M;
+		rxPhy = BluetoothDevice.PHY_LE_1M;
+		connectionInterval = -1;
+		connectionLatency = -1;
+		supervisionTimeout = -1;
 
 		if (gatt != null) {
 			gatt.disconnect();
@@ -332,7 +432,8 @@ public class Peripheral extends BluetoothGattCallback {
 
 		sendConnectionEvent(device, "BleManagerDisconnectPeripheral", BluetoothGatt.GATT_SUCCESS);
 
-		if (canceledCommand) {
+		// the GATT callback of a running command won't come anymore
+		if (canceledCommand || currentCommand != null) {
 			completedCommand();
 		}
 	}
@@ -340,23 +441,96 @@ public class Peripheral extends BluetoothGattCallback {
 	@Override
 	public void onServicesDiscovered(BluetoothGatt gatt, int status) {
 		super.onServicesDiscovered(gatt, status);
-		mainHandler.post(() -> {
+		handler.post(() -> {
+			if (status == BluetoothGatt.GATT_SUCCESS) {
+				gattIndex = new GattIndex(gatt.getServices());
+				servicesSnapshot = new ServicesSnapshot(gatt.getServices(), gattIndex);
+				validateGattCache(gatt.getServices());
+			} else {
+				// the table may be empty or partial, the next retrieveServices discovers again
+				servicesSnapshot = null;
+			}
+			cachedGattLayout = null;
 			if (retrieveServicesCallback != null) {
-				WritableMap map = this.asWritableMap(gatt);
+				WritableMap map = this.asWritableMap(gatt, retrieveServicesFilter);
 				retrieveServicesCallback.invoke(null, map);
 				retrieveServicesCallback = null;
 			}
-			completedCommand();
+			completedCommand(GattCommand.Type.DISCOVER);
 		});
 	}
 
+	// Called on API 31+ when the peripheral signals that its services changed. Not annotated
+	// with @Override so the library still compiles against older SDKs.
+	public void onServiceChanged(BluetoothGatt gatt) {
+		Log.d(BleManager.LOG_TAG, "Services changed on peripheral: " + device.getAddress());
+		handler.post(() -> {
+			gattIndex = null;
+			servicesSnapshot = null;
+		});
+		GattCache gattCache = bleManager.getGattCache();
+		if (gattCache != null) {
+			gattCache.delete(device.getAddress());
+		}
+	}
+
+	// Stores the discovered layout when it is not the persisted one. If retrieveServices already
+	// answered with the persisted layout JS is told to retrieve the services again.
+	private void validateGattCache(List<BluetoothGattService> services) {
+		GattCache gattCache = bleManager.getGattCache();
+		if (gattCache == null) {
+			return;
+		}
+		byte[] layout = GattCache.encode(services);
+		if (Arrays.equals(layout, cachedGattLayout)) {
+			return;
+		}
+		gattCache.save(device.getAddress(), layout);
+		if (cachedGattLayout != null) {
+			Log.d(BleManager.LOG_TAG, "Cached services are outdated on peripheral: " + device.getAddress());
+			WritableMap map = Arguments.createMap();
+			map.putString("peripheral", device.getAddress());
+			sendEvent("BleManagerPeripheralDidUpdateServices", map);
+		}
+	}
+
+	// Answers retrieveServices from the persisted layout, if there is a valid one, then discovers
+	// the services. The layout is loaded on the cache thread and the command goes on here after.
+	private void retrieveCachedServices(GattCache gattCache) {
+		final GattCommand command = currentCommand;
+		gattCache.load(device.getAddress(), layout -> handler.post(() -> {
+			// the command may have timed out or the peripheral disconnected meanwhile
+			if (currentCommand != command || retrieveServicesCallback == null) {
+				return;
+			}
+			if (!isConnected() || gatt == null) {
+				retrieveServicesCallback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
+				retrieveServicesCallback = null;
+				completedCommand();
+				return;
+			}
+			List<BluetoothGattService> services = layout != null ? GattCache.decode(layout) : null;
+			if (services != null) {
+				WritableMap map = asWritableMap();
+				// same order as the discovered services, so the handles match the ones of the discovery
+				new ServicesSnapshot(services, new GattIndex(services)).writeTo(map, retrieveServicesFilter);
+				cachedGattLayout = layout;
+				retrieveServicesCallback.invoke(null, map);
+				// the characteristics to operate on only come from a discovery, it still runs and
+				// the commands enqueued after this one wait for it
+				retrieveServicesCallback = null;
+			}
+			gatt.discoverServices();
+		}));
+	}
+
 	@Override
 	public void onConnectionStateChange(BluetoothGatt gatta, int status, final int newState) {
 
 		Log.d(BleManager.LOG_TAG, "onConnectionStateChange to " + newState + " on peripheral: " + device.getAddress()
 				+ " with status " + status);
 
-		mainHandler.post(() -> {
+		handler.post(() -> {
 			gatt = gatta;
 
 			if (status != BluetoothGatt.GATT_SUCCESS) {
@@ -373,7 +547,7 @@ public class Peripheral extends BluetoothGattCallback {
 					Log.d(BleManager.LOG_TAG, "Connected to: " + device.getAddress());
 					connectCallback.invoke();
 					connectCallback = null;
-					completedCommand();
+					completedCommand(GattCommand.Type.CONNECT);
 				}
 
 			} else if (newState == BluetoothProfile.STATE_DISCONNECTED || status != BluetoothGatt.GATT_SUCCESS) {
@@ -406,52 +580,121 @@ public class Peripheral extends BluetoothGattCallback {
 		try {
 			String charString = characteristic.getUuid().toString();
 			String service = characteristic.getService().getUuid().toString();
-			NotifyBufferContainer buffer = this.bufferedCharacteristics
-					.get(this.bufferedCharacteristicsKey(service, charString));
+			String key = this.bufferedCharacteristicsKey(service, charString);
+			if (readCache.isEnabled()) {
+				readCache.invalidate(generateHashKey(characteristic));
+			}
+			NotifyBufferContainer buffer = this.bufferedCharacteristics.get(key);
 			byte[] dataValue = characteristic.getValue();
 			if (buffer != null) {
-				buffer.put(dataValue);
-				Log.d(BleManager.LOG_TAG, "onCharacteristicChanged-buffering: " +
-						buffer.size() + " from peripheral: " + device.getAddress());
-
-				if (buffer.isBufferFull()) {
-					Log.d(BleManager.LOG_TAG, "onCharacteristicChanged sending buffered data " + buffer.size());
-
-					// send'm and reset
-					dataValue = buffer.items.array();
-					buffer.resetBuffer();
-				} else {
-					return;
+				synchronized (buffer) {
+					if (!buffer.fits(dataValue)) {
+						// keep packet boundaries, this value will start the next batch
+						flushBuffer(service, charString, buffer);
+					}
+					if (dataValue.length > buffer.maxBufferSize) {
+						// larger than the whole buffer, deliver it on its own
+						sendCharacteristicValue(service, charString, dataValue, dataValue.length);
+						return;
+					}
+					buffer.put(dataValue);
+					Log.d(BleManager.LOG_TAG, "onCharacteristicChanged-buffering: " +
+							buffer.size() + " from peripheral: " + device.getAddress());
+
+					if (buffer.isBufferFull()) {
+						flushBuffer(service, charString, buffer);
+					} else if (buffer.size() == dataValue.length && buffer.maxLatency > 0) {
+						// first value of a new batch
+						handler.postDelayed(buffer.getFlushTask(), buffer.maxLatency);
+					}
 				}
+				return;
 			}
 			Log.d(BleManager.LOG_TAG, "onCharacteristicChanged: " + BleManager.bytesToHex(dataValue)
 					+ " from peripheral: " + device.getAddress());
-			WritableMap map = Arguments.createMap();
-			map.putString("peripheral", device.getAddress());
-			map.putString("characteristic", charString);
-			map.putString("service", service);
-			map.putArray("value", BleManager.bytesToWritableArray(dataValue));
-			sendEvent("BleManagerDidUpdateValueForCharacteristic", map);
+			sendCharacteristicValue(service, charString, dataValue, dataValue.length);
 
 		} catch (Exception e) {
 			Log.d(BleManager.LOG_TAG, "onCharacteristicChanged ERROR: " + e.toString());
 		}
 	}
 
+	private void sendCharacteristicValue(String service, String charString, byte[] dataValue, int length) {
+		String key = this.bufferedCharacteristicsKey(service, charString);
+		WritableMap map = Arguments.createMap();
+		map.putString("peripheral", device.getAddress());
+		map.putString("characteristic", charString);
+		map.putString("service", service);
+		if (this.base64Characteristics.contains(key)) {
+			map.putString("value", BleManager.bytesToBase64(dataValue, length));
+		} else {
+			map.putArray("value", BleManager.bytesToWritableArray(dataValue, length));
+		}
+
+		NotificationQueue queue = this.notificationQueues.get(key);
+		if (queue != null) {
+			queue.offer(map);
+			// the dispatcher waits for the JS thread between bursts, so while JS is busy
+			// values pile up in the bounded queue instead of the bridge
+			if (queue.scheduleDrain()) {
+				bleManager.getEventDispatcher().enqueue(() -> drainNotificationQueue(queue));
+			}
+		} else {
+			emitCharacteristicValue(map);
+		}
+	}
+
+	private void drainNotificationQueue(NotificationQueue queue) {
+		queue.drainStarted();
+		WritableMap map;
+		while ((map = queue.poll()) != null) {
+			emitCharacteristicValue(map);
+		}
+	}
+
+	private void emitCharacteristicValue(WritableMap map) {
+		NotificationBatcher batcher = bleManager.getNotificationBatcher();
+		if (batcher != null) {
+			batcher.add(map);
+		} else {
+			sendEvent("BleManagerDidUpdateValueForCharacteristic", map);
+		}
+	}
+
+	// must be called while holding the buffer lock
+	private void flushBuffer(String service, String charString, NotifyBufferContainer buffer) {
+		if (buffer.getFlushTask() != null) {
+			handler.removeCallbacks(buffer.getFlushTask());
+		}
+		if (buffer.isEmpty()) {
+			return;
+		}
+		Log.d(BleManager.LOG_TAG, "onCharacteristicChanged sending buffered data " + buffer.size());
+		sendCharacteristicValue(service, charString, buffer.array(), buffer.size());
+		buffer.resetBuffer();
+	}
+
 	@Override
 	public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
 		super.onCharacteristicRead(gatt, characteristic, status);
 
-		mainHandler.post(() -> {
+		handler.post(() -> {
+			if (!isCurrentCommand(GattCommand.Type.READ, characteristic)) {
+				return;
+			}
 			if (status != BluetoothGatt.GATT_SUCCESS) {
 				if (status == GATT_AUTH_FAIL || status == GATT_INSUFFICIENT_AUTHENTICATION) {
 					Log.d(BleManager.LOG_TAG, "Read needs bonding");
 				}
-				readCallback.invoke(createATTResponseErrorWritableMap(status));
-				readCallback = null;
+				if (readCallback != null) {
+					readCallback.invoke(createATTResponseErrorWritableMap(status));
+					readCallback = null;
+				}
 			} else if (readCallback != null) {
 				final byte[] dataValue = copyOf(characteristic.getValue());
-				readCallback.invoke(null, BleManager.bytesToWritableArray(dataValue));
+				readCache.put(readCachePolicyKey(characteristic), generateHashKey(characteristic), dataValue,
+						readCacheVersion);
+				readCallback.invoke(null, dataValue);
 				readCallback = null;
 			}
 			completedCommand();
@@ -463,22 +706,51 @@ public class Peripheral extends BluetoothGattCallback {
 	public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
 		super.onCharacteristicWrite(gatt, characteristic, status);
 
-		mainHandler.post(() -> {
-			if (writeQueue.size() > 0) {
-				byte[] data = writeQueue.get(0);
-				writeQueue.remove(0);
-				doWrite(characteristic, data, writeCallback);
-			} else if (status != BluetoothGatt.GATT_SUCCESS) {
+		handler.post(() -> {
+			final GattCommand command = currentCommand;
+			if (reliableWriteValues != null && command != null && command.type == GattCommand.Type.RELIABLE_WRITE
+					&& command.target == characteristic) {
+				if (status != BluetoothGatt.GATT_SUCCESS) {
+					abortReliableWrite(createATTResponseErrorWritableMap(status));
+				} else if (!Arrays.equals(characteristic.getValue(), reliableWriteValues[reliableWriteIndex])) {
+					// the peripheral must echo the prepared value unchanged, otherwise nothing is applied
+					Log.d(BleManager.LOG_TAG, "Prepared value of " + characteristic.getUuid() + " doesn't match");
+					abortReliableWrite(createUnexpectedErrorWritableMap(
+							"Prepared value " + reliableWriteIndex + " was not echoed back unchanged"));
+				} else if (++reliableWriteIndex < reliableWriteValues.length) {
+					prepareReliableWrite();
+				} else if (gatt.executeReliableWrite()) {
+					reliableWriteExecuting = true;
+				} else {
+					abortReliableWrite(createInvalidStateErrorWritableMap(InvalidStateCode.UNKNOWN_BTERROR));
+				}
+				// completed by onReliableWriteCompleted
+				return;
+			}
+			if (!isCurrentCommand(GattCommand.Type.WRITE, characteristic)) {
+				return;
+			}
+			if (status != BluetoothGatt.GATT_SUCCESS) {
 				if (status == GATT_AUTH_FAIL || status == GATT_INSUFFICIENT_AUTHENTICATION) {
+					// failed like a read: waiting for a retry of the stack after bonding would hold
+					// the queue when it doesn't come, JS writes again once bonded
 					Log.d(BleManager.LOG_TAG, "Write needs bonding");
-					// *not* doing completedCommand()
-					return;
 				}
-				writeCallback.invoke(createATTResponseErrorWritableMap(status));
-				writeCallback = null;
-			} else if (writeCallback != null) {
-				writeCallback.invoke();
-				writeCallback = null;
+				writeData = null;
+				if (writeCallback != null) {
+					writeCallback.invoke(createATTResponseErrorWritableMap(status));
+					writeCallback = null;
+				}
+			} else if (writeData != null && writeOffset < writeData.length) {
+				// the stack has room for the next chunk
+				writeNextChunk();
+				return;
+			} else {
+				writeData = null;
+				if (writeCallback != null) {
+					writeCallback.invoke();
+					writeCallback = null;
+				}
 			}
 			completedCommand();
 		});
@@ -486,7 +758,10 @@ public class Peripheral extends BluetoothGattCallback {
 
 	@Override
 	public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
-		mainHandler.post(() -> {
+		handler.post(() -> {
+			if (!isCurrentCommand(GattCommand.Type.NOTIFY, descriptor)) {
+				return;
+			}
 			if (registerNotifyCallback != null) {
 				if (status == BluetoothGatt.GATT_SUCCESS) {
 					registerNotifyCallback.invoke();
@@ -509,7 +784,7 @@ public class Peripheral extends BluetoothGattCallback {
 	public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status) {
 		super.onReadRemoteRssi(gatt, rssi, status);
 
-		mainHandler.post(() -> {
+		handler.post(() -> {
 			if (readRSSICallback != null) {
 				if (status == BluetoothGatt.GATT_SUCCESS) {
 					updateRssi(rssi);
@@ -521,7 +796,7 @@ public class Peripheral extends BluetoothGattCallback {
 				readRSSICallback = null;
 			}
 
-			completedCommand();
+			completedCommand(GattCommand.Type.RSSI);
 		});
 	}
 
@@ -529,9 +804,13 @@ public class Peripheral extends BluetoothGattCallback {
 		return serviceUUID + "-" + characteristicUUID;
 	}
 
-	private void clearBuffers() {
-		for (Map.Entry<String, NotifyBufferContainer> entry : this.bufferedCharacteristics.entrySet())
-			entry.getValue().resetBuffer();
+	private void flushBuffers() {
+		for (Map.Entry<String, NotifyBufferContainer> entry : this.bufferedCharacteristics.entrySet()) {
+			NotifyBufferContainer buffer = entry.getValue();
+			synchronized (buffer) {
+				flushBuffer(buffer.serviceUUID, buffer.characteristicUUID, buffer);
+			}
+		}
 	}
 
 	private void setNotify(UUID serviceUUID, UUID characteristicUUID, final Boolean notify, Callback callback) {
@@ -541,8 +820,7 @@ public class Peripheral extends BluetoothGattCallback {
 			return;
 		}
 
-		BluetoothGattService service = gatt.getService(serviceUUID);
-		final BluetoothGattCharacteristic characteristic = findNotifyCharacteristic(service, characteristicUUID);
+		final BluetoothGattCharacteristic characteristic = findCharacteristic(serviceUUID, characteristicUUID, GattIndex.NOTIFY);
 
 		if (characteristic == null) {
 			callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.RESOURCE_NOT_FOUND));
@@ -587,6 +865,7 @@ public class Peripheral extends BluetoothGattCallback {
 			// Then write to descriptor
 			descriptor.setValue(finalValue);
 			registerNotifyCallback = finalCallback;
+			setCommandTarget(descriptor);
 			result &= gatt.writeDescriptor(descriptor);
 		} catch(Exception e) {
 			Log.d(BleManager.LOG_TAG, "Exception in setNotify", e);
@@ -599,17 +878,46 @@ public class Peripheral extends BluetoothGattCallback {
 		}
 	}
 
-	public void registerNotify(UUID serviceUUID, UUID characteristicUUID, Integer buffer, Callback callback) {
-		if (!enqueue(() -> {
+	public void registerNotify(UUID serviceUUID, UUID characteristicUUID, Integer buffer, ReadableMap options, Callback callback) {
+		if (!enqueue(GattCommand.Type.NOTIFY, options, callback, () -> {
 			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
 				completedCommand();
 				return;
 			}
 			Log.d(BleManager.LOG_TAG, "registerNotify");
+			String bufferKey = this.bufferedCharacteristicsKey(serviceUUID.toString(), characteristicUUID.toString());
 			if (buffer > 1) {
 				Log.d(BleManager.LOG_TAG, "registerNotify using buffer");
-				String bufferKey = this.bufferedCharacteristicsKey(serviceUUID.toString(), characteristicUUID.toString());
-				this.bufferedCharacteristics.put(bufferKey, new NotifyBufferContainer(buffer));
+				int maxLatency = options != null && options.hasKey("maxLatency") ? options.getInt("maxLatency") : 0;
+				NotifyBufferContainer container = new NotifyBufferContainer(serviceUUID.toString(),
+						characteristicUUID.toString(), buffer, maxLatency);
+				container.setFlushTask(() -> {
+					synchronized (container) {
+						flushBuffer(container.serviceUUID, container.characteristicUUID, container);
+					}
+				});
+				NotifyBufferContainer previous = this.bufferedCharacteristics.put(bufferKey, container);
+				if (previous != null) {
+					synchronized (previous) {
+						flushBuffer(previous.serviceUUID, previous.characteristicUUID, previous);
+					}
+				}
+			}
+			if (BleManager.isBase64PayloadFormat(options)) {
+				this.base64Characteristics.add(bufferKey);
+			} else {
+				this.base64Characteristics.remove(bufferKey);
+			}
+			NotificationQueue.Policy policy = options != null && options.hasKey("queuePolicy")
+					? NotificationQueue.Policy.fromString(options.getString("queuePolicy"))
+					: NotificationQueue.Policy.DROP_OLDEST;
+			// a drop policy without queueSize has nothing to bound, the notifications stay unbounded
+			if (options != null && (options.hasKey("queueSize") || policy == NotificationQueue.Policy.KEEP_LATEST)) {
+				int queueSize = options.hasKey("queueSize") ? options.getInt("queueSize") : 1;
+				this.notificationQueues.put(bufferKey, new NotificationQueue(serviceUUID.toString(),
+						characteristicUUID.toString(), queueSize, policy));
+			} else {
+				this.notificationQueues.remove(bufferKey);
 			}
 			this.setNotify(serviceUUID, characteristicUUID, true, callback);
 		})) {
@@ -619,17 +927,22 @@ public class Peripheral extends BluetoothGattCallback {
 	}
 
 	public void removeNotify(UUID serviceUUID, UUID characteristicUUID, Callback callback) {
-		if (!enqueue(() -> {
+		if (!enqueue(GattCommand.Type.NOTIFY, () -> {
 			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
 				completedCommand();
 				return;
 			}
 			Log.d(BleManager.LOG_TAG, "removeNotify");
 			String bufferKey = this.bufferedCharacteristicsKey(serviceUUID.toString(), characteristicUUID.toString());
-			if (this.bufferedCharacteristics.containsKey(bufferKey)) {
-				NotifyBufferContainer buffer = this.bufferedCharacteristics.get(bufferKey);
-				this.bufferedCharacteristics.remove(bufferKey);
+			NotifyBufferContainer buffer = this.bufferedCharacteristics.remove(bufferKey);
+			if (buffer != null) {
+				// deliver what was collected so far before the subscription goes away
+				synchronized (buffer) {
+					flushBuffer(buffer.serviceUUID, buffer.characteristicUUID, buffer);
+				}
 			}
+			this.base64Characteristics.remove(bufferKey);
+			this.notificationQueues.remove(bufferKey);
 			this.setNotify(serviceUUID, characteristicUUID, false, callback);
 		})) {
 			Log.e(BleManager.LOG_TAG, "Could not enqueue setNotify command to remove notify");
@@ -672,37 +985,97 @@ public class Peripheral extends BluetoothGattCallback {
 		}
 	}
 
-	public void read(UUID serviceUUID, UUID characteristicUUID, final Callback callback) {
-		if (!enqueue(() -> {
-			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
+	public void read(UUID serviceUUID, UUID characteristicUUID, ReadableMap options, final Callback callback) {
+		read(serviceUUID, characteristicUUID, -1, options, callback);
+	}
+
+	// the handle is resolved when the read runs, after the services the commands before it discover
+	public void readByHandle(int handle, ReadableMap options, Callback callback) {
+		read(null, null, handle, options, callback);
+	}
+
+	// handle -1 looks the characteristic up by UUID
+	private void read(UUID serviceUUID, UUID characteristicUUID, int handle, ReadableMap options, final Callback callback) {
+		final boolean base64 = BleManager.isBase64PayloadFormat(options);
+		final BluetoothGattCharacteristic resolved = resolveCharacteristic(serviceUUID, characteristicUUID, handle,
+				GattIndex.READ);
+		final byte[] cached = resolved != null
+				? readCache.get(readCachePolicyKey(resolved), generateHashKey(resolved)) : null;
+		if (cached != null) {
+			callback.invoke(null, base64 ? BleManager.bytesToBase64(cached) : BleManager.bytesToWritableArray(cached));
+			return;
+		}
+		// a write enqueued after this read was requested changes the version, the value read then
+		// may be the old one and is not cached
+		final long cacheVersion = resolved != null ? readCache.version(generateHashKey(resolved)) : -1;
+		// reads of a batch are not shared, a skipped batch operation must not take other callers with it.
+		// Reads are shared per characteristic instance, so those of characteristics with the same
+		// UUID are not merged, and not before the services are discovered. A read requested after a
+		// write doesn't join one queued before it, nor does a read join one waiting in another lane.
+		final GattBatch.Op batchOp = batchOp(callback);
+		final boolean shared = batchOp == null && resolved != null;
+		final String readKey = shared ? generateHashKey(resolved) + "@" + cacheVersion
+				+ "/" + GattCommand.Priority.fromOptions(options).getValue()
+				+ (options != null && options.hasKey("tag") ? "#" + options.getString("tag") : "") : null;
+		final CoalescedRead read;
+		synchronized (pendingReads) {
+			CoalescedRead pending = shared ? pendingReads.get(readKey) : null;
+			if (pending != null && pending.join(callback, base64)) {
+				Log.d(BleManager.LOG_TAG, "Read of " + resolved.getUuid() + " joined a queued one");
+				coalescedReads++;
+				return;
+			}
+			read = new CoalescedRead(callback, base64);
+			if (shared) {
+				pendingReads.put(readKey, read);
+			}
+		}
+
+		if (!enqueue(GattCommand.Type.READ, options, read, batchOp, () -> {
+			synchronized (pendingReads) {
+				if (pendingReads.get(readKey) == read) {
+					pendingReads.remove(readKey);
+				}
+				read.start();
+			}
+
+			if (BleManager.handledInvalidState(bluetoothAdapter, read)) {
 				completedCommand();
 				return;
 			}
 
 			if (!isConnected() || gatt == null) {
-				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
+				read.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
 				completedCommand();
 				return;
 			}
 
-			BluetoothGattService service = gatt.getService(serviceUUID);
-			final BluetoothGattCharacteristic characteristic = findReadableCharacteristic(service, characteristicUUID);
+			final BluetoothGattCharacteristic characteristic = handle >= 0
+					? findCharacteristic(handle)
+					: findCharacteristic(serviceUUID, characteristicUUID, GattIndex.READ);
 
 			if (characteristic == null) {
-				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.RESOURCE_NOT_FOUND));
+				read.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.RESOURCE_NOT_FOUND));
 				completedCommand();
 				return;
 			}
 
-			readCallback = callback;
+			readCallback = read;
+			readCacheVersion = cacheVersion;
+			setCommandTarget(characteristic);
 			if (!gatt.readCharacteristic(characteristic)) {
-				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.UNKNOWN_BTERROR));
+				read.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.UNKNOWN_BTERROR));
 				readCallback = null;
 				completedCommand();
 			}
 
 		})) {
-			callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
+			synchronized (pendingReads) {
+				if (pendingReads.get(readKey) == read) {
+					pendingReads.remove(readKey);
+				}
+			}
+			read.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
 		}
 	}
 
@@ -714,22 +1087,101 @@ public class Peripheral extends BluetoothGattCallback {
 		return copy;
 	}
 
-	private boolean enqueue(Runnable command) {
-		final boolean result = commandQueue.add(command);
+	private boolean enqueue(GattCommand.Type type, Runnable command) {
+		return enqueue(type, GattCommand.Priority.NORMAL, command);
+	}
+
+	private boolean enqueue(GattCommand.Type type, GattCommand.Priority priority, Runnable command) {
+		return enqueue(type, priority, null, null, null, command);
+	}
+
+	// priority and tag of the command come from the options of the JS call
+	private boolean enqueue(GattCommand.Type type, @Nullable ReadableMap options, Callback callback, Runnable command) {
+		return enqueue(type, options, callback, batchOp(callback), command);
+	}
+
+	private boolean enqueue(GattCommand.Type type, @Nullable ReadableMap options, Callback callback,
+							@Nullable GattBatch.Op batchOp, Runnable command) {
+		String tag = options != null && options.hasKey("tag") ? options.getString("tag") : null;
+		return enqueue(type, GattCommand.Priority.fromOptions(options), tag, callback, batchOp, command);
+	}
+
+	private boolean enqueue(GattCommand.Type type, GattCommand.Priority priority, @Nullable String tag,
+							@Nullable Callback callback, @Nullable GattBatch.Op batchOp, Runnable command) {
+		queuedCommandCounts.incrementAndGet(type.ordinal());
+		final boolean result = commandQueue.add(new GattCommand(type, priority, command, tag, callback, batchOp));
 		if (result) {
 			nextCommand();
 		} else {
+			queuedCommandCounts.decrementAndGet(type.ordinal());
 			Log.d(BleManager.LOG_TAG, "could not enqueue command");
 		}
 		return result;
 	}
 
+	// The executeBatch operation a command reports to, its callback, null for the other calls
+	@Nullable
+	private static GattBatch.Op batchOp(Callback callback) {
+		return callback instanceof GattBatch.Op ? (GattBatch.Op) callback : null;
+	}
+
+	// Removes the commands with this tag that didn't start yet, returns how many
+	public int cancelOperations(String tag) {
+		List<GattCommand> cancelled;
+		synchronized (this) {
+			cancelled = commandQueue.removeTagged(tag);
+		}
+		for (GattCommand command : cancelled) {
+			queuedCommandCounts.decrementAndGet(command.type.ordinal());
+			if (command.callback != null) {
+				command.callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.OPERATION_CANCELLED));
+			}
+		}
+		return cancelled.size();
+	}
+
 	private void completedCommand() {
-		commandQueue.poll();
-		commandQueueBusy = false;
+		synchronized (this) {
+			if (commandTimeoutTask != null) {
+				handler.removeCallbacks(commandTimeoutTask);
+				commandTimeoutTask = null;
+			}
+			if (currentCommand != null) {
+				commandServiceTimes[currentCommand.type.ordinal()].record(SystemClock.uptimeMillis() - currentCommand.startedAt);
+			}
+			currentCommand = null;
+			commandQueueBusy = false;
+		}
 		nextCommand();
 	}
 
+	// Called from the GATT callbacks, a late callback for a command the watchdog
+	// already gave up on must not complete the command that is running now
+	private void completedCommand(GattCommand.Type type) {
+		if (isCurrentCommand(type, null)) {
+			completedCommand();
+		}
+	}
+
+	// True if the running command is of this type and waits for the callback of this
+	// characteristic or descriptor. A type alone can't tell a late callback of an earlier
+	// read or write from the one of the next command on another attribute.
+	private boolean isCurrentCommand(GattCommand.Type type, @Nullable Object target) {
+		final GattCommand command = currentCommand;
+		if (command == null || command.type != type || target != null && command.target != target) {
+			Log.d(BleManager.LOG_TAG, "Ignoring " + type.getValue() + " callback, no such command running");
+			return false;
+		}
+		return true;
+	}
+
+	private void setCommandTarget(Object target) {
+		final GattCommand command = currentCommand;
+		if (command != null) {
+			command.target = target;
+		}
+	}
+
 	private void nextCommand() {
 		synchronized (this) {
 			if (commandQueueBusy) {
@@ -737,7 +1189,7 @@ public class Peripheral extends BluetoothGattCallback {
 				return;
 			}
 
-			final Runnable nextCommand = commandQueue.peek();
+			final GattCommand nextCommand = commandQueue.poll();
 			if (nextCommand == null) {
 				Log.d(BleManager.LOG_TAG, "Command queue empty");
 				return;
@@ -745,11 +1197,26 @@ public class Peripheral extends BluetoothGattCallback {
 
 			// Execute the next command in the queue
 			commandQueueBusy = true;
-			mainHandler.post(new Runnable() {
+			currentCommand = nextCommand;
+			queuedCommandCounts.decrementAndGet(nextCommand.type.ordinal());
+			nextCommand.startedAt = SystemClock.uptimeMillis();
+			commandWaitTimes[nextCommand.type.ordinal()].record(nextCommand.startedAt - nextCommand.enqueuedAt);
+			final long timeout = bleManager.getCommandTimeout(nextCommand.type);
+			if (timeout > 0) {
+				commandTimeoutTask = () -> onCommandTimeout(nextCommand);
+				handler.postDelayed(commandTimeoutTask, timeout);
+			}
+			handler.post(new Runnable() {
 				@Override
 				public void run() {
 					try {
-						nextCommand.run();
+						if (nextCommand.batchOp != null && nextCommand.batchOp.isSkipped()) {
+							// an earlier operation of the batch failed and the batch stops on error
+							nextCommand.batchOp.skip();
+							completedCommand();
+							return;
+						}
+						nextCommand.action.run();
 					} catch (Exception ex) {
 						Log.d(BleManager.LOG_TAG, "Error, command exception");
 						completedCommand();
@@ -759,8 +1226,36 @@ public class Peripheral extends BluetoothGattCallback {
 		}
 	}
 
-	public void readRSSI(final Callback callback) {
-		if (!enqueue(() -> {
+	private void onCommandTimeout(GattCommand command) {
+		if (currentCommand != command) {
+			return;
+		}
+		Log.w(BleManager.LOG_TAG, "Command " + command.type.getValue() + " timed out on peripheral: " + device.getAddress());
+		commandTimeoutCounts[command.type.ordinal()]++;
+
+		if (command.type == GattCommand.Type.RELIABLE_WRITE && gatt != null) {
+			// nothing of it must be executed by a later write
+			gatt.abortReliableWrite();
+		}
+		failPendingCallbacks(InvalidStateCode.OPERATION_TIMEOUT);
+		if (command.type == GattCommand.Type.CONNECT && !connected) {
+			// give up on the connection attempt as well, otherwise it would stay pending in the stack
+			connecting = false;
+			if (gatt != null) {
+				gatt.disconnect();
+				gatt.close();
+				gatt = null;
+			}
+		}
+		completedCommand();
+	}
+
+	public void setReadCachePolicy(UUID serviceUUID, UUID characteristicUUID, long ttl) {
+		readCache.setPolicy(bufferedCharacteristicsKey(serviceUUID.toString(), characteristicUUID.toString()), ttl);
+	}
+
+	public void readRSSI(ReadableMap options, final Callback callback) {
+		if (!enqueue(GattCommand.Type.RSSI, options, callback, () -> {
 			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
 				completedCommand();
 				return;
@@ -783,7 +1278,7 @@ public class Peripheral extends BluetoothGattCallback {
 	}
 
 	public void refreshCache(Callback callback) {
-		if (!enqueue(() -> {
+		if (!enqueue(GattCommand.Type.REFRESH, () -> {
 			try {
 				if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
 					completedCommand();
@@ -797,6 +1292,11 @@ public class Peripheral extends BluetoothGattCallback {
 				Method localMethod = gatt.getClass().getMethod("refresh", new Class[0]);
 				if (localMethod != null) {
 					boolean res = ((Boolean) localMethod.invoke(gatt, new Object[0])).booleanValue();
+					servicesSnapshot = null;
+					GattCache gattCache = bleManager.getGattCache();
+					if (gattCache != null) {
+						gattCache.delete(device.getAddress());
+					}
 					callback.invoke(null, res);
 				} else {
 					callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.NOT_SUPPORTED));
@@ -812,8 +1312,8 @@ public class Peripheral extends BluetoothGattCallback {
 		}
 	}
 
-	public void retrieveServices(Callback callback) {
-		if (!enqueue(() -> {
+	public void retrieveServices(@Nullable Set<UUID> serviceFilter, Callback callback) {
+		if (!enqueue(GattCommand.Type.DISCOVER, () -> {
 			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
 				completedCommand();
 				return;
@@ -821,9 +1321,19 @@ public class Peripheral extends BluetoothGattCallback {
 				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
 				completedCommand();
 				return;
+			} else if (servicesSnapshot != null) {
+				// already discovered on this connection, refreshCache forces a new discovery
+				callback.invoke(null, this.asWritableMap(gatt, serviceFilter));
+				completedCommand();
 			} else {
 				this.retrieveServicesCallback = callback;
-				gatt.discoverServices();
+				this.retrieveServicesFilter = serviceFilter;
+				GattCache gattCache = bleManager.getGattCache();
+				if (gattCache != null) {
+					retrieveCachedServices(gattCache);
+				} else {
+					gatt.discoverServices();
+				}
 			}
 		})) {
 			callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
@@ -856,38 +1366,97 @@ public class Peripheral extends BluetoothGattCallback {
 		return null;
 	}
 
-	public boolean doWrite(final BluetoothGattCharacteristic characteristic, byte[] data, final Callback callback) {
-		final byte[] copyOfData = copyOf(data);
-		return enqueue(new Runnable() {
-			@Override
-			public void run() {
-				characteristic.setValue(copyOfData);
-				if (characteristic.getWriteType() == BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT)
-					writeCallback = callback;
-				else
-					writeCallback = null;
-
-				if (!isConnected() || gatt == null) {
-					writeCallback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
-					writeCallback = null;
-					completedCommand();
-					return;
+	// Sends the next chunk of writeData. On API 33+ a busy stack is retried shortly after
+	// instead of failing the write, older versions don't tell busy apart from other errors.
+	private void writeNextChunk() {
+		if (!isConnected() || gatt == null) {
+			failWrite(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
+			return;
+		}
+		int length = Math.min(writeChunkSize, writeData.length - writeOffset);
+		byte[] chunk = writeChunk(length);
+		int status = writeCharacteristic(writeCharacteristic, chunk);
+		if (status == BluetoothStatusCodes.SUCCESS) {
+			writeOffset += length;
+			writeBusyRetries = 0;
+		} else if (status == BluetoothStatusCodes.ERROR_GATT_WRITE_REQUEST_BUSY
+				&& writeBusyRetries++ < MAX_WRITE_BUSY_RETRIES) {
+			final GattCommand command = currentCommand;
+			handler.postDelayed(() -> {
+				// the write may have timed out or the peripheral disconnected meanwhile
+				if (currentCommand == command && writeData != null) {
+					writeNextChunk();
 				}
+			}, WRITE_BUSY_RETRY_DELAY);
+		} else {
+			Log.d(BleManager.LOG_TAG, "writeCharacteristic failed with status " + status);
+			failWrite(createInvalidStateErrorWritableMap(InvalidStateCode.UNKNOWN_BTERROR));
+		}
+	}
 
-				if (!gatt.writeCharacteristic(characteristic)) {
-					// write without response, caller will handle the callback
-					if (writeCallback != null) {
-						writeCallback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.UNKNOWN_BTERROR));
-						writeCallback = null;
-					}
-					completedCommand();
-				}
+	// Chunk size of a write without maxByteSize: the largest value that fits in one packet. With
+	// response a longer value would be sent as a long write, which needs Prepare Write support
+	// many peripherals don't have.
+	private int autoChunkSize() {
+		return mtu - 3;
+	}
+
+	// The bytes of the next chunk. The stack copies them before writeCharacteristic returns, so
+	// the staging array can be refilled for the following chunk.
+	private byte[] writeChunk(int length) {
+		if (length == writeData.length) {
+			// single chunk, already a copy made for this write
+			return writeData;
+		}
+		byte[] chunk = writeStaging;
+		if (chunk == null || chunk.length != length) {
+			chunk = new byte[length];
+			if (length == writeChunkSize) {
+				writeStaging = chunk;
 			}
-		});
+		}
+		System.arraycopy(writeData, writeOffset, chunk, 0, length);
+		return chunk;
+	}
+
+	// Returns a BluetoothStatusCodes value, only SUCCESS and ERROR_UNKNOWN before API 33
+	private int writeCharacteristic(BluetoothGattCharacteristic characteristic, byte[] value) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+			return gatt.writeCharacteristic(characteristic, value, characteristic.getWriteType());
+		}
+		characteristic.setValue(value);
+		return gatt.writeCharacteristic(characteristic) ? BluetoothStatusCodes.SUCCESS
+				: BluetoothStatusCodes.ERROR_UNKNOWN;
+	}
+
+	private void failWrite(WritableMap error) {
+		writeData = null;
+		writeBusyRetries = 0;
+		if (writeCallback != null) {
+			writeCallback.invoke(error);
+			writeCallback = null;
+		}
+		completedCommand();
 	}
 
-	public void write(UUID serviceUUID, UUID characteristicUUID, byte[] data, Integer maxByteSize, Integer queueSleepTime, Callback callback, int writeType) {
-		if (!enqueue(() -> {
+	public void write(UUID serviceUUID, UUID characteristicUUID, byte[] data, Integer maxByteSize,
+					  ReadableMap options, Callback callback, int writeType) {
+		write(serviceUUID, characteristicUUID, -1, data, maxByteSize, options, callback, writeType);
+	}
+
+	// the handle is resolved when the write runs, like for readByHandle
+	public void writeByHandle(int handle, byte[] data, Integer maxByteSize, ReadableMap options,
+							  Callback callback, int writeType) {
+		write(null, null, handle, data, maxByteSize, options, callback, writeType);
+	}
+
+	// handle -1 looks the characteristic up by UUID
+	private void write(UUID serviceUUID, UUID characteristicUUID, int handle, byte[] data, Integer maxByteSize,
+					   ReadableMap options, Callback callback, int writeType) {
+		// from now on reads must not be served the old value from the cache
+		invalidateReadCache(resolveCharacteristic(serviceUUID, characteristicUUID, handle,
+				writeType == BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE ? GattIndex.WRITE_NO_RESPONSE : GattIndex.WRITE));
+		if (!enqueue(GattCommand.Type.WRITE, options, callback, () -> {
 			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
 				completedCommand();
 				return;
@@ -899,8 +1468,10 @@ public class Peripheral extends BluetoothGattCallback {
 				return;
 			}
 
-			BluetoothGattService service = gatt.getService(serviceUUID);
-			BluetoothGattCharacteristic characteristic = findWritableCharacteristic(service, characteristicUUID, writeType);
+			BluetoothGattCharacteristic characteristic = handle >= 0
+					? findCharacteristic(handle)
+					: findCharacteristic(serviceUUID, characteristicUUID,
+							writeType == BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE ? GattIndex.WRITE_NO_RESPONSE : GattIndex.WRITE);
 
 			if (characteristic == null) {
 				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.RESOURCE_NOT_FOUND));
@@ -908,78 +1479,199 @@ public class Peripheral extends BluetoothGattCallback {
 				return;
 			}
 
+			readCache.invalidate(generateHashKey(characteristic));
 			characteristic.setWriteType(writeType);
 
-			if (data.length <= maxByteSize) {
-				if (! doWrite(characteristic, data, callback)) {
-					callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
-				} else {
-					if (BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE == writeType) {
-						callback.invoke();
-					}
-				}
-			} else {
-				int dataLength = data.length;
-				int count = 0;
-				byte[] firstMessage = null;
-				List<byte[]> splittedMessage = new ArrayList<>();
-
-				while (count < dataLength && (dataLength - count > maxByteSize)) {
-					if (count == 0) {
-						firstMessage = Arrays.copyOfRange(data, count, count + maxByteSize);
-					} else {
-						byte[] splitMessage = Arrays.copyOfRange(data, count, count + maxByteSize);
-						splittedMessage.add(splitMessage);
-					}
-					count += maxByteSize;
-				}
-				if (count < dataLength) {
-					// Other bytes in queue
-					byte[] splitMessage = Arrays.copyOfRange(data, count, data.length);
-					splittedMessage.add(splitMessage);
+			// the whole message is sent by this command, one chunk per onCharacteristicWrite
+			writeData = data;
+			writeOffset = 0;
+			writeChunkSize = maxByteSize != null && maxByteSize > 0 ? maxByteSize : autoChunkSize();
+			writeCharacteristic = characteristic;
+			writeBusyRetries = 0;
+			writeCallback = callback;
+			setCommandTarget(characteristic);
+			writeNextChunk();
+		})) {
+			callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
+		}
+	}
+
+	// Writes every value with response in one reliable write: each one is prepared on the
+	// peripheral, which stores it, and they are all applied by a single execute at the end.
+	// If a value fails none is applied.
+	public void writeReliable(ReadableArray writes, ReadableMap options, Callback callback) {
+		final UUID[] serviceUUIDs = new UUID[writes.size()];
+		final UUID[] characteristicUUIDs = new UUID[writes.size()];
+		final byte[][] values = new byte[writes.size()][];
+		try {
+			for (int i = 0; i < writes.size(); i++) {
+				ReadableMap write = writes.getMap(i);
+				serviceUUIDs[i] = UUIDHelper.uuidFromString(write.getString("service"));
+				characteristicUUIDs[i] = UUIDHelper.uuidFromString(write.getString("characteristic"));
+				values[i] = BleManager.readableArrayToBytes(write.getArray("data"));
+				if (values[i].length > MAX_ATTRIBUTE_LENGTH) {
+					throw new IllegalArgumentException("value " + i + " is longer than " + MAX_ATTRIBUTE_LENGTH + " bytes");
 				}
+			}
+		} catch (Exception e) {
+			callback.invoke(createtInvalidArgumentErrorWritableMap("Invalid write: " + e.getMessage()));
+			return;
+		}
+		if (values.length == 0) {
+			callback.invoke();
+			return;
+		}
+		for (int i = 0; i < values.length; i++) {
+			invalidateReadCache(resolveCharacteristic(serviceUUIDs[i], characteristicUUIDs[i], -1, GattIndex.WRITE));
+		}
 
-				if (BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT == writeType) {
-					writeQueue.addAll(splittedMessage);
-					if (! doWrite(characteristic, firstMessage, callback)) {
-						writeQueue.clear();
-						callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
-					}
-				} else {
-					try {
-						boolean writeError = false;
-						if (! doWrite(characteristic, firstMessage, callback)) {
-							writeError = true;
-							callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
-						}
-						if (! writeError) {
-							Thread.sleep(queueSleepTime);
-							for (byte[] message : splittedMessage) {
-								if (! doWrite(characteristic, message, callback)) {
-									writeError = true;
-									callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
-									break;
-								}
-								Thread.sleep(queueSleepTime);
-							}
-							if (! writeError) {
-								callback.invoke();
-							}
-						}
-					} catch (InterruptedException e) {
-						callback.invoke(createUnexpectedErrorWritableMap("Internal error: "+ e.getMessage()));
-					}
+		if (!enqueue(GattCommand.Type.RELIABLE_WRITE, options, callback, () -> {
+			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
+				completedCommand();
+				return;
+			}
+			if (!isConnected() || gatt == null) {
+				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
+				completedCommand();
+				return;
+			}
+
+			BluetoothGattCharacteristic[] characteristics = new BluetoothGattCharacteristic[values.length];
+			for (int i = 0; i < values.length; i++) {
+				characteristics[i] = findCharacteristic(serviceUUIDs[i], characteristicUUIDs[i], GattIndex.WRITE);
+				if (characteristics[i] == null) {
+					callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.RESOURCE_NOT_FOUND));
+					completedCommand();
+					return;
 				}
+				readCache.invalidate(generateHashKey(characteristics[i]));
 			}
 
-			completedCommand();
+			if (!gatt.beginReliableWrite()) {
+				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.UNKNOWN_BTERROR));
+				completedCommand();
+				return;
+			}
+			reliableWriteCharacteristics = characteristics;
+			reliableWriteValues = values;
+			reliableWriteIndex = 0;
+			reliableWriteCallback = callback;
+			prepareReliableWrite();
 		})) {
 			callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
 		}
 	}
 
+	// In a reliable write writeCharacteristic sends the value as Prepare Write requests. The API
+	// has no offset, the stack splits a value longer than MTU - 5 into requests at increasing
+	// offsets of the same transaction, checks each echo and reports the value once. The value is
+	// set on the characteristic, where onCharacteristicWrite checks the one reported back.
+	private void prepareReliableWrite() {
+		if (!isConnected() || gatt == null) {
+			abortReliableWrite(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
+			return;
+		}
+		BluetoothGattCharacteristic characteristic = reliableWriteCharacteristics[reliableWriteIndex];
+		characteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+		characteristic.setValue(reliableWriteValues[reliableWriteIndex]);
+		setCommandTarget(characteristic);
+		int status = gatt.writeCharacteristic(characteristic) ? BluetoothStatusCodes.SUCCESS
+				: BluetoothStatusCodes.ERROR_UNKNOWN;
+		if (status != BluetoothStatusCodes.SUCCESS) {
+			Log.d(BleManager.LOG_TAG, "Prepared write failed with status " + status);
+			abortReliableWrite(createInvalidStateErrorWritableMap(InvalidStateCode.UNKNOWN_BTERROR));
+		}
+	}
+
+	private void abortReliableWrite(WritableMap error) {
+		if (gatt != null) {
+			gatt.abortReliableWrite();
+		}
+		reliableWriteCharacteristics = null;
+		reliableWriteValues = null;
+		if (reliableWriteCallback != null) {
+			reliableWriteCallback.invoke(error);
+			reliableWriteCallback = null;
+		}
+		completedCommand();
+	}
+
+	@Override
+	public void onReliableWriteCompleted(BluetoothGatt gatt, int status) {
+		super.onReliableWriteCompleted(gatt, status);
+		handler.post(() -> {
+			// an abort reports here as well, its command is already completed
+			if (!reliableWriteExecuting) {
+				return;
+			}
+			reliableWriteExecuting = false;
+			reliableWriteCharacteristics = null;
+			reliableWriteValues = null;
+			if (reliableWriteCallback != null) {
+				if (status == BluetoothGatt.GATT_SUCCESS) {
+					reliableWriteCallback.invoke();
+				} else {
+					reliableWriteCallback.invoke(createATTResponseErrorWritableMap(status));
+				}
+				reliableWriteCallback = null;
+			}
+			completedCommand(GattCommand.Type.RELIABLE_WRITE);
+		});
+	}
+
+	// Enqueues the operations back to back and reports all the results with one callback
+	public void executeBatch(ReadableArray operations, ReadableMap options, Callback callback) {
+		boolean stopOnError = options != null && options.hasKey("stopOnError") && options.getBoolean("stopOnError");
+		// a malformed operation rejects the whole batch before anything is queued
+		List<Consumer<Callback>> enqueues = new ArrayList<>(operations.size());
+		for (int i = 0; i < operations.size(); i++) {
+			try {
+				enqueues.add(batchOperation(operations.getMap(i)));
+			} catch (Exception e) {
+				Log.e(BleManager.LOG_TAG, "Invalid batch operation " + i, e);
+				callback.invoke(createtInvalidArgumentErrorWritableMap("Invalid operation at index " + i + ": " + e.getMessage()));
+				return;
+			}
+		}
+		GattBatch batch = new GattBatch(operations.size(), stopOnError, callback);
+		for (int i = 0; i < enqueues.size(); i++) {
+			enqueues.get(i).accept(batch.op(i));
+		}
+	}
+
+	// Parses an operation of executeBatch, the returned consumer enqueues it with the callback
+	// of the operation. Throws on an invalid operation.
+	private Consumer<Callback> batchOperation(ReadableMap operation) {
+		String type = operation.hasKey("type") ? operation.getString("type") : "";
+		ReadableMap options = operation.hasKey("options") ? operation.getMap("options") : null;
+
+		if (type.equals("mtu")) {
+			int mtu = operation.getInt("mtu");
+			return callback -> requestMTU(mtu, callback);
+		}
+
+		if (!operation.hasKey("service") || !operation.hasKey("characteristic")) {
+			throw new IllegalArgumentException("service and characteristic required.");
+		}
+		UUID serviceUUID = UUIDHelper.uuidFromString(operation.getString("service"));
+		UUID characteristicUUID = UUIDHelper.uuidFromString(operation.getString("characteristic"));
+
+		if (type.equals("read")) {
+			return callback -> read(serviceUUID, characteristicUUID, options, callback);
+		} else if (type.equals("notify")) {
+			return callback -> registerNotify(serviceUUID, characteristicUUID, 1, options, callback);
+		} else if (type.equals("write") || type.equals("writeWithoutResponse")) {
+			byte[] data = BleManager.readableArrayToBytes(operation.getArray("data"));
+			int maxByteSize = operation.hasKey("maxByteSize") ? operation.getInt("maxByteSize") : 0;
+			int writeType = type.equals("write") ? BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT
+					: BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
+			return callback -> write(serviceUUID, characteristicUUID, data, maxByteSize, options, callback, writeType);
+		}
+		throw new IllegalArgumentException("Unknown operation type: " + type);
+	}
+
 	public void requestConnectionPriority(int connectionPriority, Callback callback) {
-		if (!enqueue(() -> {
+		if (!enqueue(GattCommand.Type.CONNECTION_PRIORITY, () -> {
 			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
 				completedCommand();
 				return;
@@ -1002,7 +1694,7 @@ public class Peripheral extends BluetoothGattCallback {
 	}
 
 	public void requestMTU(int mtu, Callback callback) {
-		if (!enqueue(() -> {
+		if (!enqueue(GattCommand.Type.MTU, null, callback, () -> {
 			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
 				completedCommand();
 				return;
@@ -1033,7 +1725,11 @@ public class Peripheral extends BluetoothGattCallback {
 	@Override
 	public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
 		super.onMtuChanged(gatt, mtu, status);
-		mainHandler.post(() -> {
+		handler.post(() -> {
+			if (status == BluetoothGatt.GATT_SUCCESS && mtu != this.mtu) {
+				this.mtu = mtu;
+				sendConnectionParameters();
+			}
 			if (requestMTUCallback != null) {
 				if (status == BluetoothGatt.GATT_SUCCESS) {
 					requestMTUCallback.invoke(null, mtu);
@@ -1044,7 +1740,149 @@ public class Peripheral extends BluetoothGattCallback {
 				requestMTUCallback = null;
 			}
 
-			completedCommand();
+			completedCommand(GattCommand.Type.MTU);
+		});
+	}
+
+	// txPhy and rxPhy are masks of BluetoothDevice.PHY_LE_*_MASK, phyOptions one of
+	// BluetoothDevice.PHY_OPTION_*. Answers with the PHYs in use once the controller reports them.
+	public void setPreferredPhy(int txPhy, int rxPhy, int phyOptions, Callback callback) {
+		if (!enqueue(GattCommand.Type.PHY, () -> {
+			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
+				completedCommand();
+				return;
+			}
+			if (!isConnected() || gatt == null) {
+				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
+				completedCommand();
+				return;
+			}
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+				phyCallback = callback;
+				gatt.setPreferredPhy(txPhy, rxPhy, phyOptions);
+				final GattCommand command = currentCommand;
+				handler.postDelayed(() -> {
+					if (currentCommand == command && phyCallback != null) {
+						Log.d(BleManager.LOG_TAG, "No PHY update on peripheral: " + device.getAddress());
+						completedPhyCommand(this.txPhy, this.rxPhy, BluetoothGatt.GATT_SUCCESS);
+					}
+				}, PHY_UPDATE_TIMEOUT);
+			} else {
+				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.NOT_SUPPORTED));
+				completedCommand();
+			}
+		})) {
+			callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
+		}
+	}
+
+	public void readPhy(Callback callback) {
+		if (!enqueue(GattCommand.Type.PHY, () -> {
+			if (BleManager.handledInvalidState(bluetoothAdapter, callback)) {
+				completedCommand();
+				return;
+			}
+			if (!isConnected() || gatt == null) {
+				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.PERIPHERAL_NOT_CONNECTED));
+				completedCommand();
+				return;
+			}
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+				phyCallback = callback;
+				gatt.readPhy();
+			} else {
+				callback.invoke(createInvalidStateErrorWritableMap(InvalidStateCode.NOT_SUPPORTED));
+				completedCommand();
+			}
+		})) {
+			callback.invoke(createUnexpectedErrorWritableMap("Internal error: failed to enqueue operation"));
+		}
+	}
+
+	private static WritableMap phyMap(int txPhy, int rxPhy) {
+		WritableMap map = Arguments.createMap();
+		map.putInt("tx", txPhy);
+		map.putInt("rx", rxPhy);
+		return map;
+	}
+
+	private void completedPhyCommand(int txPhy, int rxPhy, int status) {
+		if (phyCallback != null) {
+			if (status == BluetoothGatt.GATT_SUCCESS) {
+				phyCallback.invoke(null, phyMap(txPhy, rxPhy));
+			} else {
+				phyCallback.invoke(createATTResponseErrorWritableMap(status));
+			}
+			phyCallback = null;
+		}
+		completedCommand(GattCommand.Type.PHY);
+	}
+
+	// keeps the PHYs of getConnectionParameters in step with the ones the stack reported last
+	private void updatePhy(int txPhy, int rxPhy, int status) {
+		if (status == BluetoothGatt.GATT_SUCCESS && (txPhy != this.txPhy || rxPhy != this.rxPhy)) {
+			this.txPhy = txPhy;
+			this.rxPhy = rxPhy;
+			sendConnectionParameters();
+		}
+	}
+
+	@Override
+	public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+		super.onPhyUpdate(gatt, txPhy, rxPhy, status);
+		handler.post(() -> {
+			// also called when the peripheral changes the PHY by itself
+			WritableMap map = phyMap(txPhy, rxPhy);
+			map.putString("peripheral", device.getAddress());
+			map.putInt("status", status);
+			sendEvent("BleManagerPeripheralDidUpdatePhy", map);
+			updatePhy(txPhy, rxPhy, status);
+			completedPhyCommand(txPhy, rxPhy, status);
+		});
+	}
+
+	// Called on API 26+ when the connection parameters change, hidden from the SDK so it is
+	// not annotated with @Override. interval is in units of 1.25 ms and timeout in units of 10 ms.
+	public void onConnectionUpdated(BluetoothGatt gatt, int interval, int latency, int timeout, int status) {
+		handler.post(() -> {
+			if (status != BluetoothGatt.GATT_SUCCESS) {
+				return;
+			}
+			connectionInterval = interval;
+			connectionLatency = latency;
+			supervisionTimeout = timeout;
+			sendConnectionParameters();
+		});
+	}
+
+	public int getMtu() {
+		return mtu;
+	}
+
+	public WritableMap getConnectionParameters() {
+		WritableMap map = Arguments.createMap();
+		map.putString("peripheral", device.getAddress());
+		map.putInt("mtu", mtu);
+		map.putInt("txPhy", txPhy);
+		map.putInt("rxPhy", rxPhy);
+		if (connectionInterval >= 0) {
+			map.putDouble("interval", connectionInterval * 1.25);
+			map.putInt("latency", connectionLatency);
+			map.putInt("supervisionTimeout", supervisionTimeout * 10);
+		}
+		return map;
+	}
+
+	private void sendConnectionParameters() {
+		sendEvent("BleManagerPeripheralDidUpdateConnectionParameters", getConnectionParameters());
+	}
+
+	@Override
+	public void onPhyRead(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+		super.onPhyRead(gatt, txPhy, rxPhy, status);
+		handler.post(() -> {
+			updatePhy(txPhy, rxPhy, status);
+			completedPhyCommand(txPhy, rxPhy, status);
 		});
 	}
 
@@ -1078,6 +1916,55 @@ public class Peripheral extends BluetoothGattCallback {
 		}
 	}
 
+	private BluetoothGattCharacteristic findCharacteristic(UUID serviceUUID, UUID characteristicUUID, int kind) {
+		GattIndex index = gattIndex;
+		if (index != null) {
+			return index.find(serviceUUID, characteristicUUID, kind);
+		}
+
+		// services not discovered through retrieveServices yet, search the GATT tables
+		BluetoothGattService service = gatt.getService(serviceUUID);
+		switch (kind) {
+			case GattIndex.NOTIFY:
+				return findNotifyCharacteristic(service, characteristicUUID);
+			case GattIndex.WRITE:
+				return findWritableCharacteristic(service, characteristicUUID, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+			case GattIndex.WRITE_NO_RESPONSE:
+				return findWritableCharacteristic(service, characteristicUUID, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+			default:
+				return findReadableCharacteristic(service, characteristicUUID);
+		}
+	}
+
+	private BluetoothGattCharacteristic findCharacteristic(int handle) {
+		GattIndex index = gattIndex;
+		return index != null ? index.get(handle) : null;
+	}
+
+	// The characteristic an operation would run on with the services discovered now, from any
+	// thread. Null until the services are discovered, handle -1 looks it up by UUID.
+	@Nullable
+	private BluetoothGattCharacteristic resolveCharacteristic(UUID serviceUUID, UUID characteristicUUID, int handle,
+															  int kind) {
+		GattIndex index = gattIndex;
+		if (index == null) {
+			return null;
+		}
+		return handle >= 0 ? index.get(handle) : index.find(serviceUUID, characteristicUUID, kind);
+	}
+
+	private void invalidateReadCache(@Nullable BluetoothGattCharacteristic characteristic) {
+		if (characteristic != null) {
+			readCache.invalidate(generateHashKey(characteristic));
+		}
+	}
+
+	// the cache policy of a characteristic is set by UUID, for every instance of it
+	private String readCachePolicyKey(BluetoothGattCharacteristic characteristic) {
+		return bufferedCharacteristicsKey(characteristic.getService().getUuid().toString(),
+				characteristic.getUuid().toString());
+	}
+
 	private String generateHashKey(BluetoothGattCharacteristic characteristic) {
 		return generateHashKey(characteristic.getService().getUuid(), characteristic);
 	}
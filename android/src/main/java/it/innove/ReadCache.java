@@ -0,0 +1,105 @@
+package it.innove;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values of the characteristics of a peripheral that have a cache policy, kept for the
+ * time to live of the policy or, for STATIC, until the value is invalidated by a write,
+ * a notification or a disconnection.
+ * Policies are set per service and characteristic UUID, values are stored per characteristic
+ * instance so characteristics sharing a UUID don't answer for each other.
+ */
+public class ReadCache {
+
+	public static final long STATIC = -1;
+
+	private static class Entry {
+		final String policyKey;
+		final byte[] value;
+		final long storedAt;
+
+		Entry(String policyKey, byte[] value, long storedAt) {
+			this.policyKey = policyKey;
+			this.value = value;
+			this.storedAt = storedAt;
+		}
+	}
+
+	private final Map<String, Long> policies = new HashMap<>();
+	private final Map<String, Entry> values = new HashMap<>();
+	// bumped by every invalidation, a read requested before it must not store its value
+	private final Map<String, Long> versions = new HashMap<>();
+	// lets the notification path skip the lock when no policy is set
+	private volatile boolean enabled = false;
+	private long hits = 0;
+	private long misses = 0;
+
+	// ttl in ms, STATIC to keep the value until invalidated, 0 to remove the policy
+	public synchronized void setPolicy(String policyKey, long ttl) {
+		values.values().removeIf(entry -> entry.policyKey.equals(policyKey));
+		if (ttl == 0) {
+			policies.remove(policyKey);
+		} else {
+			policies.put(policyKey, ttl);
+		}
+		enabled = !policies.isEmpty();
+	}
+
+	// The cached value, null when there is none or it expired
+	public synchronized byte[] get(String policyKey, String key) {
+		Long ttl = policies.get(policyKey);
+		if (ttl == null) {
+			return null;
+		}
+		Entry entry = values.get(key);
+		if (entry != null && (ttl == STATIC || SystemClock.uptimeMillis() - entry.storedAt <= ttl)) {
+			hits++;
+			return entry.value;
+		}
+		values.remove(key);
+		misses++;
+		return null;
+	}
+
+	public synchronized long version(String key) {
+		Long version = versions.get(key);
+		return version != null ? version : 0;
+	}
+
+	// Stores the value of a read requested at this version of the key
+	public synchronized void put(String policyKey, String key, byte[] value, long version) {
+		if (policies.containsKey(policyKey) && version(key) == version) {
+			values.put(key, new Entry(policyKey, value, SystemClock.uptimeMillis()));
+		}
+	}
+
+	// true when a policy is set, lets callers skip building the key of an invalidation
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void invalidate(String key) {
+		if (!enabled) {
+			return;
+		}
+		synchronized (this) {
+			values.remove(key);
+			versions.put(key, version(key) + 1);
+		}
+	}
+
+	public synchronized void clear() {
+		values.clear();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+}
@@ -0,0 +1,149 @@
+package it.innove;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.util.Base64;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The services of a peripheral as returned by retrieveServices, converted once for each
+ * service discovery. Writable maps can be sent to JS only once, so the snapshot keeps the
+ * converted strings and every call builds its maps from them.
+ */
+public class ServicesSnapshot {
+
+	private static class Descriptor {
+		final String uuid;
+		final BluetoothGattDescriptor descriptor;
+
+		Descriptor(BluetoothGattDescriptor descriptor) {
+			this.uuid = UUIDHelper.uuidToString(descriptor.getUuid());
+			this.descriptor = descriptor;
+		}
+	}
+
+	private static class Characteristic {
+		final String uuid;
+		final int handle;
+		final String[] properties;
+		final String[] permissions;
+		final Descriptor[] descriptors;
+
+		Characteristic(BluetoothGattCharacteristic characteristic, @Nullable GattIndex index) {
+			this.uuid = UUIDHelper.uuidToString(characteristic.getUuid());
+			this.handle = index != null ? index.handleOf(characteristic) : -1;
+			this.properties = Helper.propertyNames(characteristic.getProperties());
+			this.permissions = characteristic.getPermissions() > 0
+					? Helper.permissionNames(characteristic.getPermissions()) : null;
+			List<BluetoothGattDescriptor> gattDescriptors = characteristic.getDescriptors();
+			this.descriptors = new Descriptor[gattDescriptors.size()];
+			for (int i = 0; i < descriptors.length; i++) {
+				descriptors[i] = new Descriptor(gattDescriptors.get(i));
+			}
+		}
+	}
+
+	private static class Service {
+		final UUID uuid;
+		final String uuidString;
+		final Characteristic[] characteristics;
+
+		Service(BluetoothGattService service, @Nullable GattIndex index) {
+			this.uuid = service.getUuid();
+			this.uuidString = UUIDHelper.uuidToString(uuid);
+			List<BluetoothGattCharacteristic> gattCharacteristics = service.getCharacteristics();
+			this.characteristics = new Characteristic[gattCharacteristics.size()];
+			for (int i = 0; i < characteristics.length; i++) {
+				characteristics[i] = new Characteristic(gattCharacteristics.get(i), index);
+			}
+		}
+	}
+
+	private final Service[] services;
+
+	public ServicesSnapshot(List<BluetoothGattService> gattServices, @Nullable GattIndex index) {
+		services = new Service[gattServices.size()];
+		for (int i = 0; i < services.length; i++) {
+			services[i] = new Service(gattServices.get(i), index);
+		}
+	}
+
+	// Puts the services and characteristics arrays in the map, only the ones of the
+	// services in the filter if there is one
+	public void writeTo(WritableMap map, @Nullable Set<UUID> filter) {
+		WritableArray servicesArray = Arguments.createArray();
+		WritableArray characteristicsArray = Arguments.createArray();
+
+		for (Service service : services) {
+			if (filter != null && !filter.contains(service.uuid)) {
+				continue;
+			}
+			WritableMap serviceMap = Arguments.createMap();
+			serviceMap.putString("uuid", service.uuidString);
+
+			for (Characteristic characteristic : service.characteristics) {
+				WritableMap characteristicsMap = Arguments.createMap();
+
+				characteristicsMap.putString("service", service.uuidString);
+				characteristicsMap.putString("characteristic", characteristic.uuid);
+				if (characteristic.handle >= 0) {
+					characteristicsMap.putInt("handle", characteristic.handle);
+				}
+
+				WritableArray properties = Arguments.createArray();
+				for (String property : characteristic.properties) {
+					properties.pushString(property);
+				}
+				characteristicsMap.putArray("properties", properties);
+
+				if (characteristic.permissions != null) {
+					characteristicsMap.putMap("permissions", permissionsMap(characteristic.permissions));
+				}
+
+				WritableArray descriptorsArray = Arguments.createArray();
+
+				for (Descriptor descriptor : characteristic.descriptors) {
+					WritableMap descriptorMap = Arguments.createMap();
+					descriptorMap.putString("uuid", descriptor.uuid);
+					// the value changes when the descriptor is read or written, e.g. by startNotification
+					byte[] value = descriptor.descriptor.getValue();
+					if (value != null) {
+						descriptorMap.putString("value", Base64.encodeToString(value, Base64.NO_WRAP));
+					} else {
+						descriptorMap.putString("value", null);
+					}
+
+					if (descriptor.descriptor.getPermissions() > 0) {
+						descriptorMap.putMap("permissions", Helper.decodePermissions(descriptor.descriptor));
+					}
+					descriptorsArray.pushMap(descriptorMap);
+				}
+				if (descriptorsArray.size() > 0) {
+					characteristicsMap.putArray("descriptors", descriptorsArray);
+				}
+				characteristicsArray.pushMap(characteristicsMap);
+			}
+			servicesArray.pushMap(serviceMap);
+		}
+		map.putArray("services", servicesArray);
+		map.putArray("characteristics", characteristicsArray);
+	}
+
+	private static WritableMap permissionsMap(String[] permissions) {
+		WritableMap map = Arguments.createMap();
+		for (String permission : permissions) {
+			map.putString(permission, permission);
+		}
+		return map;
+	}
+}
@@ -1,33 +1,109 @@
 package it.innove;
 
+import java.util.Map;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class UUIDHelper {
 
 	// base UUID used to build 128 bit Bluetooth UUIDs
 	public static final String UUID_BASE = "0000XXXX-0000-1000-8000-00805f9b34fb";
 
+	// bits of the base UUID, a 16 bit UUID is stored in bits 32-47 of the most significant half
+	private static final long BASE_MSB = 0x0000000000001000L;
+	private static final long BASE_MSB_MASK = 0xFFFF0000FFFFFFFFL;
+	private static final long BASE_LSB = 0x800000805F9B34FBL;
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	// The same few UUIDs are converted over and over, for every notification and scan result.
+	// The caches are emptied when full, a device exposes far less UUIDs than that.
+	static final int MAX_CACHE_SIZE = 512;
+	private static final Map<String, UUID> uuids = new ConcurrentHashMap<>();
+	private static final Map<UUID, String> strings = new ConcurrentHashMap<>();
+
 	// handle 16 and 128 bit UUIDs
 	public static UUID uuidFromString(String uuid) {
+		UUID result = uuids.get(uuid);
+		if (result == null) {
+			result = parse(uuid);
+			if (uuids.size() >= MAX_CACHE_SIZE) {
+				uuids.clear();
+			}
+			uuids.put(uuid, result);
+		}
+		return result;
+	}
 
+	// return 16 bit UUIDs where possible
+	public static String uuidToString(UUID uuid) {
+		String result = strings.get(uuid);
+		if (result == null) {
+			result = format(uuid);
+			if (strings.size() >= MAX_CACHE_SIZE) {
+				strings.clear();
+			}
+			strings.put(uuid, result);
+		}
+		return result;
+	}
+
+	private static UUID parse(String uuid) {
 		if (uuid.length() == 4) {
-			uuid = UUID_BASE.replace("XXXX", uuid);
+			long shortUUID = parseHex(uuid, 0, 4);
+			if (shortUUID >= 0) {
+				return new UUID(BASE_MSB | (shortUUID << 32), BASE_LSB);
+			}
+			// not hex, let UUID report the error
+			return UUID.fromString(UUID_BASE.replace("XXXX", uuid));
+		}
+
+		if (uuid.length() == 36 && uuid.charAt(8) == '-' && uuid.charAt(13) == '-'
+				&& uuid.charAt(18) == '-' && uuid.charAt(23) == '-') {
+			long part1 = parseHex(uuid, 0, 8);
+			long part2 = parseHex(uuid, 9, 13);
+			long part3 = parseHex(uuid, 14, 18);
+			long part4 = parseHex(uuid, 19, 23);
+			long part5 = parseHex(uuid, 24, 36);
+			if (part1 >= 0 && part2 >= 0 && part3 >= 0 && part4 >= 0 && part5 >= 0) {
+				return new UUID((part1 << 32) | (part2 << 16) | part3, (part4 << 48) | part5);
+			}
 		}
 		return UUID.fromString(uuid);
 	}
 
-	// return 16 bit UUIDs where possible
-	public static String uuidToString(UUID uuid) {
-		String longUUID = uuid.toString();
-		Pattern pattern = Pattern.compile("0000(.{4})-0000-1000-8000-00805f9b34fb", Pattern.CASE_INSENSITIVE);
-		Matcher matcher = pattern.matcher(longUUID);
-		if (matcher.matches()) {
+	// value of the hex digits in [start, end), at most 15 of them, -1 if one is not a hex digit
+	private static long parseHex(String value, int start, int end) {
+		long result = 0;
+		for (int i = start; i < end; i++) {
+			char c = value.charAt(i);
+			int digit;
+			if (c >= '0' && c <= '9') {
+				digit = c - '0';
+			} else if (c >= 'a' && c <= 'f') {
+				digit = c - 'a' + 10;
+			} else if (c >= 'A' && c <= 'F') {
+				digit = c - 'A' + 10;
+			} else {
+				return -1;
+			}
+			result = (result << 4) | digit;
+		}
+		return result;
+	}
+
+	private static String format(UUID uuid) {
+		long msb = uuid.getMostSignificantBits();
+		if (uuid.getLeastSignificantBits() == BASE_LSB && (msb & BASE_MSB_MASK) == BASE_MSB) {
 			// 16 bit UUID
-			return matcher.group(1);
-		} else {
-			return longUUID;
+			int shortUUID = (int) (msb >>> 32) & 0xFFFF;
+			return new String(new char[] {
+					HEX_DIGITS[(shortUUID >> 12) & 0xF],
+					HEX_DIGITS[(shortUUID >> 8) & 0xF],
+					HEX_DIGITS[(shortUUID >> 4) & 0xF],
+					HEX_DIGITS[shortUUID & 0xF]
+			});
 		}
+		return uuid.toString();
 	}
-}
\ No newline at end of file
+}
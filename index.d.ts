@@ -47,6 +47,8 @@ declare module "react-native-ble-manager" {
     BT_UNSUPPORTED = 9, // BLE is unsupported on the provided device
     GUI_RESOURCE_UNAVAILABLE = 10, // Failed to get UI resource like the current acitivity, likely b
     CONNECTION_LIMIT_REACHED = 11, // Connection limit reached
+    OPERATION_TIMEOUT = 12, // The operation did not complete within the configured command timeout
+    OPERATION_CANCELLED = 13, // The operation was cancelled with cancelOperations before it started
   }
 
   // Error codes in BLE response or driver
@@ -107,6 +109,59 @@ declare module "react-native-ble-manager" {
     restoreIdentifierKey?: string;
     queueIdentifierKey?: string;
     forceLegacy?: boolean;
+    /// Android only
+    notificationBatchInterval?: number;
+    /// Android only
+    notificationBatchSize?: number;
+    /// Android only
+    gattThreadPoolSize?: number;
+    /// Android only
+    commandTimeouts?: CommandTimeouts;
+    /// Android only
+    statsInterval?: number;
+    /// Android only
+    gattCache?: boolean;
+  }
+
+  export interface CommandTimeouts {
+    connect?: number;
+    read?: number;
+    write?: number;
+    notify?: number;
+    rssi?: number;
+    mtu?: number;
+    discover?: number;
+    connectionPriority?: number;
+    refresh?: number;
+    phy?: number;
+    reliableWrite?: number;
+    default?: number;
+  }
+
+  /// Android only
+  export type OperationPriority = "high" | "normal" | "low";
+
+  export interface OperationOptions {
+    /// Android only
+    priority?: OperationPriority;
+    /// Android only
+    tag?: string;
+  }
+
+  export interface ReadOptions extends OperationOptions {
+    /// Android only
+    payloadFormat?: "array" | "base64";
+  }
+
+  export interface NotificationOptions extends ReadOptions {
+    /// Android only
+    queueSize?: number;
+    /// Android only
+    queuePolicy?: "dropOldest" | "dropNewest" | "keepLatest";
+  }
+
+  export interface BufferedNotificationOptions extends NotificationOptions {
+    maxLatency?: number;
   }
 
   export function start(options?: StartOptions): Promise<void>;
@@ -128,6 +183,39 @@ declare module "react-native-ble-manager" {
   ): Promise<void>;
   export function stopScan(): Promise<void>;
   export function connect(peripheralID: string): Promise<void>;
+  // [Android only]
+  export interface ConnectionProfile {
+    mtu?: number;
+    phy?: { txPhy: number; rxPhy: number; phyOptions?: number };
+    connectionPriority?: number;
+    retrieveServices?: boolean;
+    notifications?: {
+      service: string;
+      characteristic: string;
+      options?: NotificationOptions;
+    }[];
+  }
+  // time in ms of each stage, counted from the end of the previous one
+  export interface ConnectionProfileTimings {
+    connect?: number;
+    mtu?: number;
+    phy?: number;
+    connectionPriority?: number;
+    retrieveServices?: number;
+    notifications?: number;
+    total: number;
+  }
+  export interface ConnectionProfileResult {
+    mtu?: number;
+    phy?: Phy;
+    peripheralInfo?: PeripheralInfo;
+    timings: ConnectionProfileTimings;
+  }
+  // [Android only]
+  export function connectWithProfile(
+    peripheralID: string,
+    profile: ConnectionProfile
+  ): Promise<ConnectionProfileResult>;
   export function disconnect(
     peripheralID: string,
     force?: boolean
@@ -136,7 +224,8 @@ declare module "react-native-ble-manager" {
   export function startNotification(
     peripheralID: string,
     serviceUUID: string,
-    characteristicUUID: string
+    characteristicUUID: string,
+    options?: NotificationOptions
   ): Promise<void>;
 
   /// Android only
@@ -144,7 +233,8 @@ declare module "react-native-ble-manager" {
     peripheralID: string,
     serviceUUID: string,
     characteristicUUID: string,
-    buffer: number
+    buffer: number,
+    options?: BufferedNotificationOptions
   ): Promise<void>;
 
   export function stopNotification(
@@ -156,14 +246,16 @@ declare module "react-native-ble-manager" {
   export function read(
     peripheralID: string,
     serviceUUID: string,
-    characteristicUUID: string
+    characteristicUUID: string,
+    options?: ReadOptions
   ): Promise<any>;
   export function write(
     peripheralID: string,
     serviceUUID: string,
     characteristicUUID: string,
     data: any,
-    maxByteSize?: number
+    maxByteSize?: number,
+    options?: OperationOptions
   ): Promise<void>;
   export function writeWithoutResponse(
     peripheralID: string,
@@ -171,10 +263,58 @@ declare module "react-native-ble-manager" {
     characteristicUUID: string,
     data: any,
     maxByteSize?: number,
-    queueSleepTime?: number
+    queueSleepTime?: number,
+    options?: OperationOptions
+  ): Promise<void>;
+  /// Android only
+  export function writeBase64(
+    peripheralID: string,
+    serviceUUID: string,
+    characteristicUUID: string,
+    data: string,
+    maxByteSize?: number,
+    options?: OperationOptions
+  ): Promise<void>;
+  /// Android only
+  export function writeWithoutResponseBase64(
+    peripheralID: string,
+    serviceUUID: string,
+    characteristicUUID: string,
+    data: string,
+    maxByteSize?: number,
+    options?: OperationOptions
   ): Promise<void>;
 
-  export function readRSSI(peripheralID: string): Promise<number>;
+  /// Android only
+  export function readByHandle(
+    peripheralID: string,
+    handle: number,
+    options?: ReadOptions
+  ): Promise<any>;
+  /// Android only
+  export function writeByHandle(
+    peripheralID: string,
+    handle: number,
+    data: any,
+    maxByteSize?: number,
+    options?: OperationOptions & { withoutResponse?: boolean }
+  ): Promise<void>;
+  export interface ReliableWrite {
+    service: string;
+    characteristic: string;
+    data: number[];
+  }
+  /// Android only
+  export function writeReliable(
+    peripheralID: string,
+    writes: ReliableWrite[],
+    options?: OperationOptions
+  ): Promise<void>;
+
+  export function readRSSI(
+    peripheralID: string,
+    options?: OperationOptions
+  ): Promise<number>;
 
   export function getConnectedPeripherals(
     serviceUUIDs: string[]
@@ -204,9 +344,102 @@ declare module "react-native-ble-manager" {
   export function enableLocation(): Promise<void>;
   // [Android only]
   export function refreshCache(peripheralID: string): Promise<void>;
+  // [Android only]
+  export function setReadCachePolicy(
+    peripheralID: string,
+    serviceUUID: string,
+    characteristicUUID: string,
+    ttl: number
+  ): Promise<void>;
+  // [Android only]
+  export function cancelOperations(peripheralID: string, tag: string): Promise<number>;
+  // [Android only]
+  export interface BatchOperation {
+    type: "read" | "write" | "writeWithoutResponse" | "notify" | "mtu";
+    service?: string;
+    characteristic?: string;
+    data?: number[];
+    maxByteSize?: number;
+    mtu?: number;
+    options?: NotificationOptions;
+  }
+  export interface BatchOperationResult {
+    value?: any;
+    error?: BTErrorData | string;
+    skipped?: boolean;
+  }
+  // [Android only]
+  export function executeBatch(
+    peripheralID: string,
+    operations: BatchOperation[],
+    options?: { stopOnError?: boolean }
+  ): Promise<BatchOperationResult[]>;
+  // [Android only]
+  export interface NotificationQueueStats {
+    service: string;
+    characteristic: string;
+    queuePolicy: string;
+    queueSize: number;
+    queued: number;
+    dropped: number;
+  }
+  export interface LatencyHistogram {
+    count: number;
+    mean: number;
+    max: number;
+    p50: number;
+    p90: number;
+    p99: number;
+    buckets: number[];
+  }
+  export interface OperationStats {
+    queued: number;
+    waitTime: LatencyHistogram;
+    serviceTime: LatencyHistogram;
+  }
+  export interface PeripheralStats {
+    peripheral: string;
+    notifications: NotificationQueueStats[];
+    queued: { [priority in OperationPriority]: number };
+    timeouts: { [type in keyof Omit<CommandTimeouts, "default">]: number };
+    operations: { [type in keyof Omit<CommandTimeouts, "default">]: OperationStats };
+    coalescedReads: number;
+    cacheHits: number;
+    cacheMisses: number;
+  }
+  // [Android only]
+  export function getPeripheralStats(peripheralID: string): Promise<PeripheralStats>;
+  export interface ConnectionParameters {
+    peripheral: string;
+    mtu: number;
+    txPhy: number;
+    rxPhy: number;
+    /// in ms, missing until the stack reports the connection parameters (API 26+)
+    interval?: number;
+    latency?: number;
+    /// in ms
+    supervisionTimeout?: number;
+  }
+  // [Android only]
+  export function getConnectionParameters(peripheralID: string): Promise<ConnectionParameters>;
   // [Android only API 21+]
   export function requestMTU(peripheralID: string, mtu: number): Promise<number>;
 
+  // BluetoothDevice.PHY_LE_1M, PHY_LE_2M, PHY_LE_CODED
+  export interface Phy {
+    tx: number;
+    rx: number;
+  }
+  // [Android only API 26+]
+  export function setPreferredPhy(
+    peripheralID: string,
+    txPhy: number,
+    rxPhy: number,
+    phyOptions?: number
+  ): Promise<Phy>;
+  // [Android only API 26+]
+  export function readPhy(peripheralID: string): Promise<Phy>;
+
   export function createBond(
     peripheralID: string,
     peripheralPin?: string
@@ -246,6 +479,8 @@ declare module "react-native-ble-manager" {
     characteristic: string;
     service: string;
     descriptors?: Descriptor[];
+    /// Android only
+    handle?: number;
 
   }
 
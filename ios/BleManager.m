@@ -612,7 +612,7 @@ RCT_EXPORT_METHOD(checkState)
     });
 }
 
-RCT_EXPORT_METHOD(write:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUID  characteristicUUID:(NSString*)characteristicUUID message:(NSArray*)message maxByteSize:(NSInteger)maxByteSize callback:(nonnull RCTResponseSenderBlock)callback)
+RCT_EXPORT_METHOD(write:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUID  characteristicUUID:(NSString*)characteristicUUID message:(NSArray*)message maxByteSize:(NSInteger)maxByteSize options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
 {
     NSLog(@"Write");
     
@@ -644,19 +644,26 @@ RCT_EXPORT_METHOD(write:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUI
             
             writeCallback = callback;
             
+            NSInteger chunkSize = maxByteSize;
+            if (chunkSize <= 0) {
+                // largest value that fits in one packet, longer ones would need a long write
+                // that not every peripheral supports
+                chunkSize = [peripheral maximumWriteValueLengthForType:CBCharacteristicWriteWithoutResponse];
+            }
+            
             RCTLogInfo(@"Message to write(%lu): %@ ", (unsigned long)[dataMessage length], [dataMessage hexadecimalString]);
-            if ([dataMessage length] > maxByteSize) {
+            if ([dataMessage length] > chunkSize) {
                 int dataLength = (int)dataMessage.length;
                 int count = 0;
                 NSData* firstMessage;
-                while(count < dataLength && (dataLength - count > maxByteSize)){
+                while(count < dataLength && (dataLength - count > chunkSize)){
                     if (count == 0){
-                        firstMessage = [dataMessage subdataWithRange:NSMakeRange(count, maxByteSize)];
+                        firstMessage = [dataMessage subdataWithRange:NSMakeRange(count, chunkSize)];
                     }else{
-                        NSData* splitMessage = [dataMessage subdataWithRange:NSMakeRange(count, maxByteSize)];
+                        NSData* splitMessage = [dataMessage subdataWithRange:NSMakeRange(count, chunkSize)];
                         [writeQueue addObject:splitMessage];
                     }
-                    count += maxByteSize;
+                    count += chunkSize;
                 }
                 if (count < dataLength) {
                     NSData* splitMessage = [dataMessage subdataWithRange:NSMakeRange(count, dataLength - count)];
@@ -674,7 +681,7 @@ RCT_EXPORT_METHOD(write:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUI
 }
 
 
-RCT_EXPORT_METHOD(writeWithoutResponse:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUID  characteristicUUID:(NSString*)characteristicUUID message:(NSArray*)message maxByteSize:(NSInteger)maxByteSize queueSleepTime:(NSInteger)queueSleepTime callback:(nonnull RCTResponseSenderBlock)callback)
+RCT_EXPORT_METHOD(writeWithoutResponse:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUID  characteristicUUID:(NSString*)characteristicUUID message:(NSArray*)message maxByteSize:(NSInteger)maxByteSize queueSleepTime:(NSInteger)queueSleepTime options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
 {
     NSLog(@"writeWithoutResponse");
     
@@ -693,14 +700,19 @@ RCT_EXPORT_METHOD(writeWithoutResponse:(NSString *)deviceUUID serviceUUID:(NSStr
     }
     NSData *dataMessage = [NSData dataWithBytesNoCopy:bytes length:c freeWhenDone:YES];
     if (context) {
-        if ([dataMessage length] > maxByteSize) {
+        NSInteger chunkSize = maxByteSize;
+        if (chunkSize <= 0) {
+            // largest value that fits in one packet of the connection
+            chunkSize = [[context peripheral] maximumWriteValueLengthForType:CBCharacteristicWriteWithoutResponse];
+        }
+        if ([dataMessage length] > chunkSize) {
             NSUInteger length = [dataMessage length];
             NSUInteger offset = 0;
             CBPeripheral *peripheral = [context peripheral];
             CBCharacteristic *characteristic = [context characteristic];
             
             do {
-                NSUInteger thisChunkSize = length - offset > maxByteSize ? maxByteSize : length - offset;
+                NSUInteger thisChunkSize = length - offset > chunkSize ? chunkSize : length - offset;
                 NSData* chunk = [NSData dataWithBytesNoCopy:(char *)[dataMessage bytes] + offset length:thisChunkSize freeWhenDone:NO];
                 
                 offset += thisChunkSize;
@@ -724,7 +736,7 @@ RCT_EXPORT_METHOD(writeWithoutResponse:(NSString *)deviceUUID serviceUUID:(NSStr
 }
 
 
-RCT_EXPORT_METHOD(read:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUID  characteristicUUID:(NSString*)characteristicUUID callback:(nonnull RCTResponseSenderBlock)callback)
+RCT_EXPORT_METHOD(read:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUID  characteristicUUID:(NSString*)characteristicUUID options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
 {
     NSLog(@"read");
     
@@ -752,7 +764,7 @@ RCT_EXPORT_METHOD(read:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUID
     }];
 }
 
-RCT_EXPORT_METHOD(readRSSI:(NSString *)deviceUUID callback:(nonnull RCTResponseSenderBlock)callback)
+RCT_EXPORT_METHOD(readRSSI:(NSString *)deviceUUID options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
 {
     NSLog(@"readRSSI");
     
@@ -819,7 +831,7 @@ RCT_EXPORT_METHOD(retrieveServices:(NSString *)deviceUUID services:(NSArray<NSSt
     }];
 }
 
-RCT_EXPORT_METHOD(startNotification:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUID  characteristicUUID:(NSString*)characteristicUUID callback:(nonnull RCTResponseSenderBlock)callback)
+RCT_EXPORT_METHOD(startNotification:(NSString *)deviceUUID serviceUUID:(NSString*)serviceUUID  characteristicUUID:(NSString*)characteristicUUID options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
 {
     NSLog(@"startNotification");
     
@@ -929,6 +941,71 @@ RCT_EXPORT_METHOD(requestMTU:(NSString *)deviceUUID mtu:(NSInteger)mtu callback:
     callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
 }
 
+RCT_EXPORT_METHOD(executeBatch:(NSString *)deviceUUID operations:(NSArray *)operations options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(getPeripheralStats:(NSString *)deviceUUID callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(cancelOperations:(NSString *)deviceUUID tag:(NSString *)tag callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(setReadCachePolicy:(NSString *)deviceUUID serviceUUID:(NSString *)serviceUUID characteristicUUID:(NSString *)characteristicUUID ttl:(NSInteger)ttl callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(readByHandle:(NSString *)deviceUUID handle:(NSInteger)handle options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(writeByHandle:(NSString *)deviceUUID handle:(NSInteger)handle message:(NSArray *)message maxByteSize:(NSInteger)maxByteSize options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(connectWithProfile:(NSString *)peripheralUUID profile:(NSDictionary *)profile callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(setPreferredPhy:(NSString *)deviceUUID txPhy:(NSInteger)txPhy rxPhy:(NSInteger)rxPhy phyOptions:(NSInteger)phyOptions callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(readPhy:(NSString *)deviceUUID callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(getConnectionParameters:(NSString *)deviceUUID callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(writeReliable:(NSString *)deviceUUID writes:(NSArray *)writes options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(writeBase64:(NSString *)deviceUUID serviceUUID:(NSString *)serviceUUID characteristicUUID:(NSString *)characteristicUUID message:(NSString *)message maxByteSize:(NSInteger)maxByteSize options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
+RCT_EXPORT_METHOD(writeWithoutResponseBase64:(NSString *)deviceUUID serviceUUID:(NSString *)serviceUUID characteristicUUID:(NSString *)characteristicUUID message:(NSString *)message maxByteSize:(NSInteger)maxByteSize options:(NSDictionary *)options callback:(nonnull RCTResponseSenderBlock)callback)
+{
+    callback(@[[ErrorHelper createInvalidStateErrorDictionaryWithStatus:InvalidStateCodeNotSupported]]);
+}
+
 - (void)peripheral:(CBPeripheral *)peripheral didWriteValueForCharacteristic:(CBCharacteristic *)characteristic error:(NSError *)error {
     NSLog(@"didWrite");
     